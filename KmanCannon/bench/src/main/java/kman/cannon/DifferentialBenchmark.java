@@ -0,0 +1,76 @@
+package kman.cannon;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import kman.cannon.Workloads.Kind;
+
+/**
+ * Benchmarks the whole pipeline of the old {@linkplain ImageProcessor} against
+ * {@linkplain Canary} on the synthetic workloads. Run it with <code>-prof gc</code> to
+ * compare how much each of them allocates. The output of both is checked by
+ * {@linkplain DifferentialRunner}. Canary's searches with a time budget are turned off in
+ * the fork, since the old planner has none of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2,time = 5)
+@Measurement(iterations = 3,time = 5)
+@Fork(value = 1,jvmArgsAppend = {"-Dkman.cannon.order=0","-Dkman.cannon.refine=0","-Dkman.cannon.exact=0"})
+public class DifferentialBenchmark {
+    /**Kind of map being planned.*/
+    @Param({"SOLID","TEXT","LINES","NOISE","RINGS","SPRITES"})
+    public Kind map;
+    
+    private Path dir;
+    private String nf;
+    private PrintStream stdout;
+    
+    /**Stream which throws away everything written to it.*/
+    private static final PrintStream NULL = new PrintStream(new OutputStream() {
+        @Override public void write(final int b) {}
+        @Override public void write(final byte[] b,final int off,final int len) {}
+    });
+    
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("kman-diff");
+        nf = new File(dir.toFile(),map.name().toLowerCase()).getPath();
+        ImageIO.write(Workloads.generate(map,.5,0L),"png",new File(nf+".png"));
+        // The old planner always prints the statistics of every candidate.
+        stdout = System.out;
+        System.setOut(NULL);
+    }
+    @TearDown(Level.Trial)
+    public void teardown() throws IOException {
+        System.setOut(stdout);
+        final File[] files = dir.toFile().listFiles();
+        if(files != null) for(final File f : files) Files.delete(f.toPath());
+        Files.delete(dir);
+    }
+    
+    @Benchmark public ImageProcessor.DrawResult imageProcessor() throws IOException {return ImageProcessor.execute(nf);}
+    @Benchmark public Canary.DrawResult canary() throws IOException {return Canary.execute(nf+".png",Canary.BEST,false,NULL);}
+}
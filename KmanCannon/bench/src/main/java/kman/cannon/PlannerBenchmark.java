@@ -0,0 +1,131 @@
+package kman.cannon;
+
+import static kman.cannon.Canary.RADIUS;
+import static kman.cannon.Canary.STEP;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import kman.cannon.Canary.DrawResult;
+import kman.cannon.Canary.Module;
+import kman.cannon.Workloads.Kind;
+
+/**
+ * Benchmarks of the planner's hot paths on the synthetic {@linkplain Workloads}. Every map
+ * is generated from the same seed, so results are comparable between runs and between
+ * commits. The firing order search is turned off in the fork so that the modules do not
+ * depend on timing; it is benchmarked on its own for a fixed time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3,time = 2)
+@Measurement(iterations = 5,time = 2)
+@Fork(value = 1,jvmArgsAppend = "-Dkman.cannon.order=0")
+public class PlannerBenchmark {
+    /**Kind of map being planned.*/
+    @Param({"SOLID","RINGS","NOISE"})
+    public Kind map;
+    
+    private Path dir;
+    private String file;
+    private BufferedImage image;
+    private PlanContext ctx;
+    private ShotBuffer[] east,west;
+    private DrawResult mainEast,mainWest,best;
+    private int[] masks;
+    
+    /**Stream which throws away everything written to it.*/
+    private static final PrintStream NULL = new PrintStream(new OutputStream() {
+        @Override public void write(final int b) {}
+        @Override public void write(final byte[] b,final int off,final int len) {}
+    });
+    private static final Writer DISCARD = new Writer() {
+        @Override public void write(final char[] cbuf,final int off,final int len) {}
+        @Override public void write(final String str,final int off,final int len) {}
+        @Override public void flush() {}
+        @Override public void close() {}
+    };
+    
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("kman-bench");
+        final String name = map.name().toLowerCase();
+        file = new File(dir.toFile(),name+".png").getPath();
+        image = Workloads.generate(map,.5,0L);
+        ImageIO.write(image,"png",new File(file));
+        
+        ctx = new PlanContext();
+        ctx.load(image);
+        east = new ShotBuffer[STEP];
+        west = new ShotBuffer[STEP];
+        for(short o = 0;o < STEP;++o) {
+            east[o] = ctx.getLinesEast(o,new ShotBuffer());
+            west[o] = ctx.getLinesWest(o,new ShotBuffer());
+        }
+        // The planner uses every slot, so the results which are kept are scored after it.
+        try(final ShotPlanner planner = new ShotPlanner((a,b) -> b == null || a.acc > b.acc? a : b,null,false)) {
+            final DrawResult dr = planner.plan(ctx,new File(dir.toFile(),name).getPath());
+            best = ctx.score(new ShotBuffer(dr.shots),dr.file,0);
+        }
+        mainEast = ctx.score(east[0],file,1);
+        mainWest = ctx.score(west[0],file,2);
+        masks = Canary.order(NULL,ctx.score(new ShotBuffer(best.shots),file,3));
+    }
+    @TearDown(Level.Trial)
+    public void teardown() throws IOException {
+        final File[] files = dir.toFile().listFiles();
+        if(files != null) for(final File f : files) Files.delete(f.toPath());
+        Files.delete(dir);
+    }
+    
+    @Benchmark public BufferedImage createMap() throws IOException {return ctx.createMap(file);}
+    @Benchmark public BufferedImage load() {return ctx.load(image);}
+    @Benchmark public ShotBuffer getLinesEast() {return ctx.getLinesEast((short)RADIUS,new ShotBuffer());}
+    @Benchmark public ShotBuffer getLinesWest() {return ctx.getLinesWest((short)RADIUS,new ShotBuffer());}
+    @Benchmark public DrawResult score() {return ctx.score(east[0],file,5);}
+    @Benchmark public DrawResult antiAliasEast() {return ctx.antiAlias(mainEast,(short)RADIUS,east,file,6);}
+    @Benchmark public DrawResult antiAliasWest() {return ctx.antiAlias(mainWest,(short)RADIUS,west,file,7);}
+    @Benchmark public DrawResult bands() {return ctx.bands(east,west,ForkJoinPool.commonPool(),file,8);}
+    @Benchmark public DrawResult phases() {return PhaseSearch.search(ctx,Canary.BEST,ForkJoinPool.commonPool(),file,ShotPlanner.CANDIDATES).results[0];}
+    @Benchmark public DrawResult greedy() {return ctx.greedy(file,9);}
+    @Benchmark public void draw() throws IOException {ctx.draw(best);}
+    @Benchmark public int[] rank() {return Canary.rank(best,new int[best.nshots]);}
+    /**Ranked firing masks, which {@linkplain FiringOrder#optimize(int[],long)} improves for a fixed time.*/
+    @State(Scope.Benchmark)
+    public static class Ranked {
+        /**Milliseconds that the firing order is searched for.*/
+        @Param({"10","100"})
+        public long budget;
+        int[] masks;
+        @Setup(Level.Trial)
+        public void rank(final PlannerBenchmark b) {Canary.rank(b.best,masks = new int[b.best.nshots]);}
+    }
+    @Benchmark public int[] optimize(final Ranked r) {return FiringOrder.optimize(r.masks,r.budget * 1_000_000L);}
+    @Benchmark public void writeCommand() throws IOException {Canary.writeCommand(DISCARD,Canary.modules(masks));}
+    @Benchmark public Module[] modules() {return Canary.modules(masks);}
+}
@@ -0,0 +1,201 @@
+package kman.cannon;
+
+import static kman.cannon.Canary.IMG_WIDTH;
+import static kman.cannon.Canary.RADIUS;
+import static kman.cannon.Canary.STEP;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+import kman.cannon.Canary.DrawResult;
+
+/**
+ * Refines any plan with simulated annealing. Each move shifts a shot by one pixel,
+ * deletes a shot, or merges two overlapping shots into one between them, and is scored
+ * by adding and removing shots from a {@linkplain Coverage}, so a move never costs more
+ * than a few footprints.
+ * <p>
+ * The energy of a plan is its amount of shots, plus a penalty for each foreground pixel
+ * which the starting plan damages but it does not, and for each pixel it misses beyond
+ * the starting plan's misses. A plan is only kept when it has no penalty, so it is never
+ * less accurate. Every thread of the pool runs its own chain, which restarts from its
+ * best plan a few times with the temperature reset.
+ */
+final class Annealer {
+    private Annealer() {}
+    
+    /**
+     * Energy of each foreground pixel which is damaged by the initial plan but not by the
+     * current one, and of each miss more than the initial plan.
+     */
+    private static final int LOSS = 16,MISS = 32;
+    /**Temperature at the start and end of each restart.*/
+    private static final double HOT = 2.0,COLD = 0.05;
+    /**Amount of times each chain is restarted from its best plan.*/
+    private static final int RESTARTS = 4;
+    /**Amount of moves between checks of the clock.*/
+    private static final int CHECK = 1024;
+    /**Lowest and highest valid coordinate of a shot.*/
+    private static final int MIN = RADIUS,MAX = IMG_WIDTH - 1 - RADIUS;
+    
+    /**A plan being annealed by one thread.*/
+    private static final class Chain {
+        private final Coverage cov;
+        private final Random rng;
+        private short[] rows,cols;
+        private int n;
+        /**Index of the shot centred on each pixel, or <code>-1</code>.*/
+        private final int[] owner = new int[IMG_WIDTH * IMG_WIDTH];
+        /**Foreground damage and misses which the plan must keep to be accepted.*/
+        private final int fg0,miss0;
+        /**Best plan which has been accepted.*/
+        private short[] bestRows,bestCols;
+        private int bestN;
+        
+        Chain(final Coverage cov,final ShotBuffer shots,final int fg0,final int miss0,final long seed) {
+            this.cov = cov;
+            this.fg0 = fg0;
+            this.miss0 = miss0;
+            rng = new Random(seed);
+            bestN = shots.size();
+            bestRows = new short[bestN];
+            bestCols = new short[bestN];
+            for(int s = 0;s < bestN;++s) {bestRows[s] = shots.row(s); bestCols[s] = shots.col(s);}
+        }
+        
+        /**@return The energy of the current plan.*/
+        private long energy() {return n + (long)LOSS * Math.max(0,fg0 - cov.ndamage() + cov.nmiss()) + (long)MISS * Math.max(0,cov.nmiss() - miss0);}
+        /**@return <code>true</code> if the current plan is as accurate as the initial one.*/
+        private boolean feasible() {return cov.ndamage() - cov.nmiss() >= fg0 && cov.nmiss() <= miss0;}
+        /**@return <code>true</code> if no shot is centred on the pixel.*/
+        private boolean free(final int r,final int c) {return owner[r * IMG_WIDTH + c] < 0;}
+        
+        /**Replaces the current plan with the best one.*/
+        private void reset() {
+            cov.clear();
+            Arrays.fill(owner,-1);
+            rows = Arrays.copyOf(bestRows,bestN);
+            cols = Arrays.copyOf(bestCols,bestN);
+            n = 0;
+            // A shot on top of another one never damages anything new.
+            for(int s = 0;s < bestN;++s) if(free(bestRows[s],bestCols[s])) add(bestRows[s],bestCols[s]);
+        }
+        private void add(final short r,final short c) {
+            if(n == rows.length) {rows = Arrays.copyOf(rows,n * 2 + 1); cols = Arrays.copyOf(cols,n * 2 + 1);}
+            rows[n] = r;
+            cols[n] = c;
+            owner[r * IMG_WIDTH + c] = n++;
+            cov.add(r,c);
+        }
+        /**Removes the shot by moving the last shot into its place.*/
+        private void remove(final int s) {
+            final short r = rows[s],c = cols[s];
+            cov.remove(r,c);
+            owner[r * IMG_WIDTH + c] = -1;
+            if(s != --n) {
+                rows[s] = rows[n];
+                cols[s] = cols[n];
+                owner[rows[s] * IMG_WIDTH + cols[s]] = s;
+            }
+        }
+        /**@return Any shot other than <code>s</code> whose footprint overlaps it, or <code>-1</code>.*/
+        private int neighbour(final int s) {
+            final int r0 = rows[s],c0 = cols[s];
+            int found = 0,out = -1;
+            for(int r = Math.max(MIN,r0 - STEP + 1);r <= Math.min(MAX,r0 + STEP - 1);++r)
+                for(int c = Math.max(MIN,c0 - STEP + 1);c <= Math.min(MAX,c0 + STEP - 1);++c) {
+                    final int o = owner[r * IMG_WIDTH + c];
+                    // Keep each overlapping shot with equal probability.
+                    if(o >= 0 && o != s && rng.nextInt(++found) == 0) out = o;
+                }
+            return out;
+        }
+        
+        /**Anneals the current plan until the deadline.*/
+        private void anneal(final long start,final long end) {
+            final double ratio = Math.log(COLD / HOT);
+            double t = HOT;
+            long e = energy();
+            for(int i = 0;n > 0;++i) {
+                if(i % CHECK == 0) {
+                    final long now = System.nanoTime();
+                    if(now >= end) return;
+                    t = HOT * Math.exp(ratio * (now - start) / (end - start));
+                }
+                final int s = rng.nextInt(n),move = rng.nextInt(5);
+                final short r = rows[s],c = cols[s];
+                if(move < 3) { // Shift
+                    final int d = rng.nextInt(4);
+                    final short nr = (short)(r + (d == 0? 1 : d == 1? -1 : 0)),
+                                nc = (short)(c + (d == 2? 1 : d == 3? -1 : 0));
+                    if(nr < MIN || nr > MAX || nc < MIN || nc > MAX || !free(nr,nc)) continue;
+                    remove(s);
+                    add(nr,nc);
+                    final long e2 = energy();
+                    if(accept(e2 - e,t)) e = e2;
+                    else {remove(n - 1); add(r,c);}
+                } else if(move == 3) { // Delete
+                    remove(s);
+                    final long e2 = energy();
+                    if(accept(e2 - e,t)) e = e2;
+                    else add(r,c);
+                } else { // Merge
+                    final int o = neighbour(s);
+                    if(o < 0) continue;
+                    final short ro = rows[o],co = cols[o],
+                                mr = (short)((r + ro) / 2),mc = (short)((c + co) / 2);
+                    remove(Math.max(s,o));
+                    remove(Math.min(s,o));
+                    if(!free(mr,mc)) {add(r,c); add(ro,co); continue;}
+                    add(mr,mc);
+                    final long e2 = energy();
+                    if(accept(e2 - e,t)) e = e2;
+                    else {remove(n - 1); add(r,c); add(ro,co);}
+                }
+                if(n < bestN && feasible()) {
+                    bestN = n;
+                    bestRows = Arrays.copyOf(rows,n);
+                    bestCols = Arrays.copyOf(cols,n);
+                }
+            }
+        }
+        /**@return <code>true</code> if a move which changes the energy by <code>de</code> is accepted.*/
+        private boolean accept(final long de,final double t) {return de <= 0 || rng.nextDouble() < Math.exp(-de / t);}
+    }
+    
+    /**
+     * @param ctx Context which scored the plan.
+     * @param in Plan to refine.
+     * @param budget Nanoseconds to refine for.
+     * @param pool Pool which runs the chains, one per thread.
+     * @param file Where the refined plan would be drawn.
+     * 
+     * @return The refined plan. Its coverage is not owned by any slot.
+     */
+    static DrawResult refine(final PlanContext ctx,final DrawResult in,final long budget,final ForkJoinPool pool,
+                             final String file) {
+        final long start = System.nanoTime(),end = start + budget;
+        final Chain[] chains = new Chain[pool.getParallelism()];
+        final CompletableFuture<?>[] tasks = new CompletableFuture<?>[chains.length];
+        for(int i = 0;i < chains.length;++i) {
+            final Chain ch = chains[i] = new Chain(ctx.scratch(),in.shots,in.ndamage - in.nmiss,in.nmiss,i);
+            tasks[i] = CompletableFuture.runAsync(() -> {
+                for(int k = 0;k < RESTARTS;++k) {
+                    ch.reset();
+                    ch.anneal(System.nanoTime(),start + budget * (k + 1) / RESTARTS);
+                }
+            },pool);
+        }
+        CompletableFuture.allOf(tasks).join();
+        
+        Chain best = chains[0];
+        for(final Chain ch : chains) if(ch.bestN < best.bestN) best = ch;
+        final ShotBuffer shots = new ShotBuffer(Math.max(1,best.bestN));
+        for(int s = 0;s < best.bestN;++s) shots.add(best.bestRows[s],best.bestCols[s]);
+        final Coverage cov = ctx.scratch();
+        for(int s = 0;s < shots.size();++s) cov.add(shots.row(s),shots.col(s));
+        return ctx.result(cov,shots,file);
+    }
+}
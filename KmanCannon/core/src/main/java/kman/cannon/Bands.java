@@ -0,0 +1,140 @@
+package kman.cannon;
+
+import static kman.cannon.Canary.IMG_WIDTH;
+import static kman.cannon.Canary.RADIUS;
+import static kman.cannon.Canary.STEP;
+import static kman.cannon.PlanContext.WORDS;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Picks the row offset and sweep direction of each band of {@linkplain Canary#STEP} rows
+ * separately, instead of using one offset and direction for the whole image. Band
+ * <code>k</code> with offset <code>o</code> is the line at row <code>k * STEP + o + RADIUS</code>.
+ * <p>
+ * The footprints of a band's line can only overlap the lines of the bands next to it, so
+ * the damage of a plan is the damage of each line minus the overlap of each neighbouring
+ * pair. That makes the plan a chain which is solved exactly by dynamic programming. Like
+ * {@linkplain Canary#BEST}, the plan damages as many foreground pixels as possible, then
+ * misses as few pixels as possible, then uses as few shots as possible.
+ */
+final class Bands {
+    private Bands() {}
+    
+    /**Amount of bands which can hold a shot.*/
+    static final int BANDS = (IMG_WIDTH - 2 * RADIUS - 1) / STEP + 1;
+    /**Amount of states of each band: every offset in both directions.*/
+    private static final int STATES = STEP * 2;
+    /**Weights of the foreground damage and the misses. The shots weigh 1.*/
+    private static final int FG = 40,MISS = 20;
+    
+    /**@return The row of the band's line for the state.*/
+    private static final int row(final int band,final int state) {return band * STEP + state / 2 + RADIUS;}
+    
+    /**Sets the bits <code>[from,to]</code> of the row.*/
+    private static final void set(final long[] row,final int from,final int to) {
+        for(int w = from >>> 6;w <= to >>> 6;++w) {
+            long bits = -1L;
+            if(w == from >>> 6) bits &= -1L << from;
+            if(w == to >>> 6) bits &= -1L >>> (63 - (to & 63));
+            row[w] |= bits;
+        }
+    }
+    
+    /**
+     * @param map Foreground map, as packed by {@linkplain PlanContext}.
+     * @param east Shots of every east sweep, indexed by row offset.
+     * @param west Shots of every west sweep, indexed by row offset.
+     * @param pool Pool which evaluates the bands.
+     * 
+     * @return The shots of the best line for each band, in the same order as the sweeps.
+     */
+    static ShotBuffer plan(final long[][] map,final ShotBuffer[] east,final ShotBuffer[] west,final ForkJoinPool pool) {
+        // Each sweep lists its lines in row order, so each band's line is one segment of it.
+        final int[][] start = new int[STATES][BANDS + 1];
+        for(int s = 0;s < STATES;++s) {
+            final ShotBuffer sweep = (s & 1) == 0? east[s / 2] : west[s / 2];
+            for(int b = 0,i = 0;b <= BANDS;++b) {
+                while(i < sweep.size() && sweep.row(i) < row(b,s)) ++i;
+                start[s][b] = i;
+            }
+        }
+        
+        // Score every line on its own, then every pair of lines in neighbouring bands
+        // which overlap. Each band is independent of the others.
+        final long[][][][] masks = new long[BANDS][STATES][][];
+        final long[][] node = new long[BANDS][STATES];
+        final long[][][] edge = new long[BANDS][STATES][STATES];
+        {
+            final CompletableFuture<?>[] lines = new CompletableFuture<?>[BANDS];
+            for(int band = 0;band < BANDS;++band) {
+                final int b = band;
+                lines[b] = CompletableFuture.runAsync(() -> {
+                    for(int s = 0;s < STATES;++s) {
+                        final ShotBuffer sweep = (s & 1) == 0? east[s / 2] : west[s / 2];
+                        final long[][] mask = masks[b][s] = new long[STEP][WORDS];
+                        for(int i = start[s][b];i < start[s][b + 1];++i)
+                            for(final long[] r : mask) set(r,sweep.col(i) - RADIUS,sweep.col(i) + RADIUS);
+                        final int top = row(b,s) - RADIUS;
+                        long fg = 0,miss = 0;
+                        for(int dr = 0;dr < STEP && top + dr < IMG_WIDTH;++dr)
+                            for(int w = 0;w < WORDS;++w) {
+                                fg += Long.bitCount(mask[dr][w] & map[top + dr][w]);
+                                miss += Long.bitCount(mask[dr][w] & ~map[top + dr][w]);
+                            }
+                        node[b][s] = (fg << FG) - (miss << MISS) - (start[s][b + 1] - start[s][b]);
+                    }
+                },pool);
+            }
+            CompletableFuture.allOf(lines).join();
+            final CompletableFuture<?>[] pairs = new CompletableFuture<?>[BANDS - 1];
+            for(int band = 1;band < BANDS;++band) {
+                final int b = band;
+                pairs[b - 1] = CompletableFuture.runAsync(() -> {
+                    for(int s = 0;s < STATES;++s)
+                        for(int t = 0;t < STATES;++t) {
+                            // The lines only overlap when the lower one is shifted up.
+                            final int ts = row(b - 1,s) - RADIUS,tt = row(b,t) - RADIUS;
+                            long fg = 0,miss = 0;
+                            for(int r = tt;r < ts + STEP && r < IMG_WIDTH;++r)
+                                for(int w = 0;w < WORDS;++w) {
+                                    final long both = masks[b - 1][s][r - ts][w] & masks[b][t][r - tt][w];
+                                    fg += Long.bitCount(both & map[r][w]);
+                                    miss += Long.bitCount(both & ~map[r][w]);
+                                }
+                            edge[b][s][t] = -(fg << FG) + (miss << MISS);
+                        }
+                },pool);
+            }
+            CompletableFuture.allOf(pairs).join();
+        }
+        
+        // Find the best chain of states, band by band.
+        final long[] value = node[0].clone();
+        final int[][] from = new int[BANDS][STATES];
+        for(int b = 1;b < BANDS;++b) {
+            final long[] next = new long[STATES];
+            for(int t = 0;t < STATES;++t) {
+                long best = Long.MIN_VALUE;
+                for(int s = 0;s < STATES;++s) {
+                    final long v = value[s] + edge[b][s][t];
+                    if(v > best) {best = v; from[b][t] = s;}
+                }
+                next[t] = best + node[b][t];
+            }
+            System.arraycopy(next,0,value,0,STATES);
+        }
+        final int[] states = new int[BANDS];
+        for(int s = 1;s < STATES;++s) if(value[s] > value[states[BANDS - 1]]) states[BANDS - 1] = s;
+        for(int b = BANDS - 1;b > 0;--b) states[b - 1] = from[b][states[b]];
+        
+        final ShotBuffer out = new ShotBuffer();
+        for(int b = 0;b < BANDS;++b) {
+            final int s = states[b];
+            final ShotBuffer sweep = (s & 1) == 0? east[s / 2] : west[s / 2];
+            for(int i = start[s][b];i < start[s][b + 1];++i) out.add(sweep.row(i),sweep.col(i));
+        }
+        return out;
+    }
+}
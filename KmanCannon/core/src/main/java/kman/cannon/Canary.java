@@ -0,0 +1,977 @@
+package kman.cannon;
+
+import static java.lang.Math.hypot;
+import static java.lang.System.out;
+
+import java.awt.Color;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPOutputStream;
+
+import javax.swing.JFileChooser;
+import javax.swing.filechooser.FileFilter;
+
+public class Canary {
+    
+    public static final byte RADIUS = 3, // == STEP / 2
+                               STEP = 7,
+                           IMG_STEP = 7;
+    public static final short IMG_WIDTH = 528;
+    public static final int[] COVERAGE = new int[] {Color.LIGHT_GRAY.getRGB(),Color.GRAY.getRGB()};
+    public static final int SHOT = Color.BLACK.getRGB(),
+                            MISS = Color.YELLOW.getRGB(),
+                            BACKGROUND = Color.WHITE.getRGB(),
+                            FOREGROUND = Color.BLACK.getRGB(); 
+    
+    public static final class DrawResult {
+        public final ShotBuffer shots;
+        public final Coverage coverage;
+        public final int ndamage,nmiss,nshots;
+        public final double acc,eff,err;
+        
+        public final byte pidx;
+        public final long propulsion;
+        public final boolean north;
+        public final boolean west;
+        public final boolean mirror;
+        
+        public final String file;
+        
+        protected DrawResult(final Coverage coverage,final int ndamage,final int nmiss,final int nshots,
+                             final double acc,final double eff,final ShotBuffer shots,final String file) {
+            this.coverage = coverage;
+            this.ndamage = ndamage;
+            this.nmiss = nmiss;
+            this.nshots = nshots;
+            this.acc = acc;
+            this.eff = eff;
+            this.shots = shots;
+            this.file = file;
+            err = getErr(acc,eff,nshots);
+            {
+                byte midx = 0;
+                {
+                    // Add up the total propulsion for every shot and determine which
+                    // rotation and parity is the most efficient.
+                    final long[] prop = Propulsion.totals(shots);
+                    long min = prop[0];
+                    for(byte b = 1;b < Propulsion.ORIENTATIONS;++b) if(prop[b] < min) {min = prop[b]; midx = b;}
+                    pidx = midx;
+                    propulsion = min;
+                }
+                // Decompose the binary representation of the minimum index into booleans.
+                west = (midx & (byte)1) == (byte)1;
+                north = ((midx = (byte)(midx >> (byte)1)) & (byte)1) == (byte)1;
+                mirror = ((midx = (byte)(midx >> (byte)1)) & (byte)1) == (byte)1;
+            }
+        }
+        
+        private static final double getErr(final double acc,final double eff,final int nshots)
+        {return hypot(100.0 - acc,100.0 - eff);}
+    }
+    
+    /**Prints statistics for the draw result.*/
+    static void printResult(final PrintStream out,final String title,final DrawResult dr) {
+        out.println(title+": "+dr.file);
+        out.println("\t#  dmg:"+dr.ndamage);
+        out.println("\t# fail:"+dr.nmiss);
+        out.println("\t#  tnt:"+dr.nshots);
+        out.println("\t%  acc:"+dr.acc);
+        out.println("\t%  eff:"+dr.eff);
+        out.println("\t   err:"+dr.err);
+        out.println("\t# prop:"+dr.propulsion);
+        out.print  ("\t place:");
+        {
+            final StringBuilder sb = new StringBuilder(dr.mirror? "mirrored ":"")
+                                               .append(dr.north? "north":"south").append(' ')
+                                               .append(dr.west? "west":"east");
+            out.println(sb);
+        }
+        out.println();
+    }
+    
+    public static interface Comparator {DrawResult compare(final DrawResult a,final DrawResult b);}
+    /**Prefers accuracy, then fewer misses, lower error, efficiency, fewer shots and less propulsion.*/
+    public static final Comparator BEST = (a,b) -> {
+        if(a == null || b == null) return a == null                  ? b : a;
+        if(a.acc != b.acc)         return a.acc        < b.acc       ? b : a;
+        if(a.nmiss != b.nmiss)     return a.nmiss      > b.nmiss     ? b : a;
+        if(a.err != b.err)         return a.err        > b.err       ? b : a;
+        if(a.eff != b.eff)         return a.eff        < b.eff       ? b : a;
+        if(a.nshots != b.nshots)   return a.nshots     > b.nshots    ? b : a;
+                                   return a.propulsion > b.propulsion? b : a;
+    };
+    
+    private static final short[] MODULES = new short[] {1056,528,264,132,66,30,16,8,4,4,2,1};
+    /**
+     * Decomposes the input propulsion into per-module firing commands.
+     * 
+     * @return A mask where bit <code>i</code> is set if module <code>i</code> fires.
+     */
+    private static final int decompose(short x,short z) {
+        int out = 0;
+        {
+            byte i = 0,j = 0;
+            for(;i < MODULES.length && x > 0;++i)     if(MODULES[i] <= x) {x -= MODULES[i]; out |= 1 << i;}
+            for(;j < MODULES.length && z > 0;++i,++j) if(MODULES[j] <= z) {z -= MODULES[j]; out |= 1 << i;}
+        }
+        return out;
+    }
+    /**@see #decompose(short,short)*/
+    private static final int decompose(final ShotBuffer shots,final int s,final byte pidx)
+    {return decompose(Propulsion.x(pidx,shots.row(s)),Propulsion.z(pidx,shots.col(s)));}
+    /**Merge sort helper.*/
+    private static final void orderH1(final int[] counts,final byte[] order,final byte start,final byte length) {
+        if(length < 2) return;
+        // Base case.
+        if(length == 2) {
+            final byte end = (byte)(start + 1);
+            if(counts[order[start]] < counts[order[end]]) {
+                final byte x = order[start];
+                order[start] = order[end];
+                order[end] = x;
+            }
+            return;
+        }
+        
+        // Divide and conquer.
+        final byte l2 = (byte)(length / (byte)2);
+        orderH1(counts,order,start,l2);
+        final byte s2 = (byte)(start + l2),
+                   l3 = (byte)(l2 + (byte)(length % (byte)2));
+        orderH1(counts,order,s2,l3);
+        
+        // Merge.
+        final byte s3 = (byte)(l3 + s2);
+        for(byte a = start,b = s2;a < b && b < s3;++a) {
+            if(counts[order[a]] < counts[order[b]]) {
+                byte x = order[b];
+                for(byte y = a;y < b;++y) {final byte z = order[y]; order[y] = x; x = z;}
+                order[b++] = x;
+            }
+        }
+    }
+    /**Bits sorted by each pass of the radix sort.*/
+    private static final byte RADIX = 8;
+    /**
+     * Maximum amount of nanoseconds spent searching for a better firing order. It is set in
+     * milliseconds by the <code>kman.cannon.order</code> system property, and <code>0</code>
+     * turns it off.
+     */
+    private static final long ORDER_BUDGET = Long.getLong("kman.cannon.order",2000L) * 1_000_000L;
+    /**
+     * Amount of nanoseconds spent refining the best plan. It is set in milliseconds by the
+     * <code>kman.cannon.refine</code> system property, and is <code>0</code>, which turns it
+     * off, unless that is set.
+     */
+    private static final long REFINE_BUDGET = Long.getLong("kman.cannon.refine",0L) * 1_000_000L;
+    /**
+     * Amount of nanoseconds spent searching for the optimal plan. It is set in milliseconds
+     * by the <code>kman.cannon.exact</code> system property, and is <code>0</code>, which
+     * turns it off, unless that is set.
+     */
+    private static final long EXACT_BUDGET = Long.getLong("kman.cannon.exact",0L) * 1_000_000L;
+    /**@return The budgets of the firing order, refinement and exact searches in milliseconds.*/
+    static final String budgets()
+    {return "order="+ORDER_BUDGET / 1_000_000L+" refine="+REFINE_BUDGET / 1_000_000L+" exact="+EXACT_BUDGET / 1_000_000L;}
+    /**
+     * Ranks the shots in the draw result based on the best module order. Shots which fire
+     * the most used module come first, and each following module is ordered so that it
+     * only changes between firing and not firing where the modules before it change.
+     * 
+     * @param ranked Receives the firing mask of each shot, in the new order.
+     * 
+     * @return The new order, as indices into the result's shots.
+     */
+    static final int[] rank(final DrawResult result,final int[] ranked) {
+        final int n = result.nshots;
+        final int[] masks = new int[n];
+        final byte[] order;
+        {
+            final int[] counts = new int[MODULES.length * 2];
+            for(int s = 0;s < n;++s) {
+                final int m = masks[s] = decompose(result.shots,s,result.pidx);
+                for(int b = m;b != 0;b &= b - 1) ++counts[Integer.numberOfTrailingZeros(b)];
+            }
+            order = new byte[counts.length];
+            for(byte i = 0;i < counts.length;order[i] = i++);
+            orderH1(counts,order,(byte)0,(byte)counts.length);
+        }
+        
+        // Pack each mask into a key where the most used module is the most significant bit.
+        // The keys are inverted so that the firing shots come first, then ranked by their
+        // position in the reflected Gray code so that neighbouring groups of shots share
+        // as many modules as possible.
+        int[] keys = new int[n],shots = new int[n];
+        for(int s = 0;s < n;++s) {
+            final int m = masks[s];
+            int k = 0;
+            for(final byte i : order) k = k << 1 | (m >>> i & 1);
+            k = ~k & (1 << order.length) - 1;
+            k ^= k >>> 1; k ^= k >>> 2; k ^= k >>> 4; k ^= k >>> 8; k ^= k >>> 16;
+            keys[s] = k;
+            shots[s] = s;
+        }
+        // Stable radix sort of the keys, least significant digit first.
+        {
+            int[] k2 = new int[n],s2 = new int[n];
+            final int[] buckets = new int[(1 << RADIX) + 1];
+            for(int shift = 0;shift < order.length;shift += RADIX) {
+                Arrays.fill(buckets,0);
+                for(int s = 0;s < n;++s) ++buckets[(keys[s] >>> shift & (1 << RADIX) - 1) + 1];
+                for(int d = 1;d < buckets.length;++d) buckets[d] += buckets[d - 1];
+                for(int s = 0;s < n;++s) {
+                    final int d = buckets[keys[s] >>> shift & (1 << RADIX) - 1]++;
+                    k2[d] = keys[s];
+                    s2[d] = shots[s];
+                }
+                int[] t = keys; keys = k2; k2 = t;
+                t = shots; shots = s2; s2 = t;
+            }
+        }
+        for(int s = 0;s < n;++s) ranked[s] = masks[shots[s]];
+        return shots;
+    }
+    /**
+     * Re-orders the shots in the draw result by their {@linkplain #rank(DrawResult,int[]) rank}.
+     * That order is then improved by {@linkplain FiringOrder} for up to {@linkplain #ORDER_BUDGET},
+     * unless the improved order needs more boxes or inventories.
+     * 
+     * @param log Stream which receives the box and inventory counts before and after the
+     *            improvement.
+     * 
+     * @return The firing mask of each shot, in the new order.
+     */
+    static final int[] order(final PrintStream log,final DrawResult result) {
+        final int n = result.nshots;
+        final int[] keys = new int[n],masks = new int[n];
+        int[] shots = rank(result,keys);
+        
+        final int[] before = Module.count(keys),
+                    improved = ORDER_BUDGET > 0? FiringOrder.optimize(keys,ORDER_BUDGET) : null;
+        for(int s = 0;s < n;++s) masks[s] = keys[improved == null? s : improved[s]];
+        int[] after = improved == null? before : Module.count(masks);
+        // Fewer changes usually means fewer stacks, but the stacks can still fall into more
+        // boxes and inventories, which are what the cannon costs.
+        if(after[0] > before[0] || after[1] > before[1]) {
+            System.arraycopy(keys,0,masks,0,n);
+            after = before;
+        } else if(improved != null) {
+            for(int s = 0;s < n;++s) improved[s] = shots[improved[s]];
+            shots = improved;
+        }
+        result.shots.permute(shots);
+        log.println("order:");
+        log.println("\t# changes:"+FiringOrder.cost(keys)+" -> "+FiringOrder.cost(masks));
+        log.println("\t#   boxes:"+before[0]+" -> "+after[0]);
+        log.println("\t#     inv:"+before[1]+" -> "+after[1]);
+        log.println();
+        return masks;
+    }
+    
+    private static final char FULL_WIDTH = 0xFEE0;
+    /**Makes a string look pretty.*/
+    private static final String aestheticize(final String in) {
+        final StringBuilder sb = new StringBuilder();
+        for(final char c : in.toCharArray()) sb.append((char)(c + (c != ' '? FULL_WIDTH : 0)));
+        return sb.toString();
+    }
+    
+    /**
+     * An object representing a firing module. The module only stores the lengths of the
+     * runs of shots which either all fire or all don't. The item stacks, and the boxes
+     * which hold them, are worked out from the runs when the module is written.
+     */
+    static final class Module {
+        public static final byte MAX_STACK_SIZE = 64,
+                                 BOX_SIZE = 27;
+        public static final String FIRE = "tnt",
+                                   BLANK = "ice";
+        
+        /**Length of each run. The runs alternate between firing and not firing.*/
+        private int[] runs = new int[16];
+        private int nruns = 0;
+        /**<code>true</code> if the first run fires.*/
+        private boolean first = false;
+        /**
+         * Index of the first stack of each run, followed by the total amount of stacks. Only
+         * valid once the module has been stripped.
+         */
+        private int[] stacks = null;
+        private String moduleID;
+        /**
+         * Items of every distinct box, keyed by the box's stacks. Modules which are written
+         * together share the same fragments, so each distinct box is only rendered once.
+         */
+        private final Map<String,Fragment> fragments;
+        
+        /**The rendered items of a box.*/
+        private static final class Fragment {
+            /**Text NBT of the box's items.*/
+            private String text = null;
+            /**Binary NBT of the box's <code>Items</code> list.*/
+            private byte[] nbt = null;
+        }
+        
+        /**
+         * @param moduleID Name of the module.
+         * @param fragments Rendered boxes to share with other modules.
+         */
+        public Module(final String moduleID,final Map<String,Fragment> fragments) {
+            this.moduleID = moduleID;
+            this.fragments = fragments;
+        }
+        
+        /**@return <code>true</code> if the shots of the run fire.*/
+        private boolean fires(final int run) {return first ^ (run & 1) == 1;}
+        public void put(final boolean fire) {
+            stacks = null;
+            if(nruns != 0 && fires(nruns - 1) == fire) {++runs[nruns - 1]; return;}
+            if(nruns == 0) first = fire;
+            else if(nruns == runs.length) runs = Arrays.copyOf(runs,nruns * 2);
+            runs[nruns++] = 1;
+        }
+        /**
+         * Removes the shots after the last one which fires, since they never need to be
+         * dispensed, and works out where each stack starts.
+         * 
+         * @return <code>false</code> if the module never fires.
+         */
+        private boolean strip() {
+            if(nruns != 0 && !fires(nruns - 1)) --nruns;
+            if(nruns == 0) return false;
+            if(stacks == null) {
+                stacks = new int[nruns + 1];
+                for(int r = 0;r < nruns;++r) stacks[r + 1] = stacks[r] + (runs[r] + MAX_STACK_SIZE - 1) / MAX_STACK_SIZE;
+            }
+            return true;
+        }
+        /**@return The amount of boxes needed to hold every stack.*/
+        private int nboxes() {return (stacks[nruns] + BOX_SIZE - 1) / BOX_SIZE;}
+        /**@return The amount of stacks in the box.*/
+        private int size(final int box) {return Math.min(BOX_SIZE,stacks[nruns] - box * BOX_SIZE);}
+        /**@return The run which holds the stack.*/
+        private int run(final int stack) {
+            final int r = Arrays.binarySearch(stacks,0,nruns,stack);
+            // Runs never have zero stacks, so an exact match is the run itself.
+            return r >= 0? r : -r - 2;
+        }
+        /**@return The amount of items in the stack, which is in the specified run.*/
+        private int count(final int run,final int stack)
+        {return Math.min(MAX_STACK_SIZE,runs[run] - (stack - stacks[run]) * MAX_STACK_SIZE);}
+        
+        /**@return The rendered items of the box.*/
+        private Fragment fragment(final int box) {
+            // Each stack is one character: its count, then whether it fires.
+            final int s0 = box * BOX_SIZE,n = size(box);
+            final char[] key = new char[n];
+            for(int i = 0,r = run(s0);i < n;++i) {
+                final int s = s0 + i;
+                if(s == stacks[r + 1]) ++r;
+                key[i] = (char)(count(r,s) << 1 | (fires(r)? 1 : 0));
+            }
+            return fragments.computeIfAbsent(new String(key),k -> new Fragment());
+        }
+        /**Writes the items of the box.*/
+        private void items(final CommandWriter w,final int box) throws IOException {
+            final Fragment f = fragment(box);
+            if(f.text == null) {
+                final StringBuilder sb = new StringBuilder("{Items:[");
+                final int s0 = box * BOX_SIZE,n = size(box);
+                for(int i = 0,r = run(s0);i < n;++i) {
+                    final int s = s0 + i;
+                    if(s == stacks[r + 1]) ++r;
+                    if(i > 0) sb.append(',');
+                    sb.append("{Slot:").append(i).append(",id:").append(fires(r)? FIRE : BLANK).append(",Count:").append(count(r,s)).append('}');
+                }
+                f.text = sb.append("]}").toString();
+            }
+            w.append(f.text);
+        }
+        /**Writes the box as an item.*/
+        private void box(final CommandWriter w,final int box) throws IOException {
+            w.append("id:red_shulker_box,Count:1,tag:{BlockEntityTag:");
+            items(w,box);
+            w.append('}');
+        }
+        /**Writes the <code>Items</code> list of the box.*/
+        private void items(final NbtWriter nbt,final int box) throws IOException {
+            final Fragment f = fragment(box);
+            if(f.nbt == null) {
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try(final NbtWriter out = new NbtWriter(bytes)) {
+                    final int s0 = box * BOX_SIZE,n = size(box);
+                    out.list("Items",NbtWriter.COMPOUND,n);
+                    for(int i = 0,r = run(s0);i < n;++i) {
+                        final int s = s0 + i;
+                        if(s == stacks[r + 1]) ++r;
+                        out.compound(null).putByte("Slot",i).putString("id","minecraft:"+(fires(r)? FIRE : BLANK))
+                           .putByte("Count",count(r,s)).end();
+                    }
+                }
+                f.nbt = bytes.toByteArray();
+            }
+            nbt.raw(f.nbt);
+        }
+        /**Writes the box as an item in the specified slot.*/
+        private void box(final NbtWriter nbt,final int box,final byte slot) throws IOException {
+            nbt.compound(null).putByte("Slot",slot).putString("id","minecraft:red_shulker_box").putByte("Count",1)
+               .compound("tag").compound("BlockEntityTag");
+            items(nbt,box);
+            nbt.end().end().end();
+        }
+        /**Next box to be placed by {@linkplain #blocks()}.*/
+        private int read = 0;
+        private int pop() {return read++;}
+        
+        public static final byte DBL_SIZE = 54,
+                                 CHEST_SIZE = 27,
+                                 HOPPER_SIZE = 5;
+        
+        /**Writes the start of a line of the sign.*/
+        private static final void line(final CommandWriter w,final byte n,final String text,final String color)
+                                       throws IOException {
+            w.append(n == 1? "Text1:" : ",Text"+n+':').quote()
+             .append("{\"text\":\"").append(text).append("\",\"bold\":true,\"color\":\"").append(color).append('"');
+        }
+        /**Starts the command which is run when a line of the sign is clicked.*/
+        private static final void click(final CommandWriter w) throws IOException
+        {w.append(",\"clickEvent\":{\"action\":\"run_command\",\"value\":").quote();}
+        private static final String RULE = aestheticize("==========");
+        /**Writes the sign which generates this module, as an item in an inventory.*/
+        private final void sign(final CommandWriter w) throws IOException {
+            w.append("id:oak_sign,Count:1,tag:");
+            tag(w);
+        }
+        /**Writes the NBT of the sign which generates this module.*/
+        private final void tag(final CommandWriter w) throws IOException {
+            final String name = aestheticize(moduleID);
+            w.append("{display:{Name:").quote()
+             .append("{\"text\":\"\\u00A7e\\u00A7l").append(name).append("\"}").unquote()
+             .append("},Enchantments:[{}],BlockEntityTag:{");
+            line(w,(byte)1,RULE,"dark_red");
+            click(w);
+            w.append("setblock ~ ~ ~-1 chain_command_block{auto:1,Command:").quote().append("setblock ~ ~ ~1 air").unquote()
+             .append('}').unquote().append("}}").unquote();
+            line(w,(byte)2,aestheticize("Module"),"black");
+            click(w);
+            w.append("summon falling_block ~ ~.1 ~ ");
+            commands(w);
+            w.unquote().append("}}").unquote();
+            line(w,(byte)3,name,"black");
+            click(w);
+            w.append("setblock ~ ~ ~ air").unquote().append("}}").unquote();
+            line(w,(byte)4,RULE,"dark_red");
+            w.append('}').unquote().append("}}");
+        }
+        
+        private static final String FALLING_0 = "id:falling_block,",
+                                    FALLING_1 = "BlockState:{Name:command_block},Time:1,TileEntityData:{auto:1,Command:",
+                                    FALLING_3 = ",Passengers:[{"+FALLING_0+FALLING_1,
+                                    FALLING_4 = "}]";
+        /**Starts the next falling command block, which rides the one before it.*/
+        private static final void falling(final CommandWriter w,final boolean first) throws IOException {
+            w.append(first? "{"+FALLING_1 : FALLING_3).quote();
+        }
+        /**Ends a falling command block.*/
+        private static final void fallen(final CommandWriter w) throws IOException {w.unquote().append('}');}
+        
+        /**Marks the absence of a box.*/
+        private static final int NONE = -1;
+        /**A block placed by the module, relative to the sign.*/
+        private final class Block {
+            public final String id;
+            public final String[][] properties;
+            public final byte dx,dy,dz;
+            /**Box whose items the block holds, or {@linkplain #NONE}.*/
+            public final int contents;
+            /**Box in each slot of the block's inventory, or <code>null</code>. Empty slots are {@linkplain #NONE}.*/
+            public final int[] slots;
+            
+            private Block(final String id,final String[][] properties,final byte dx,final byte dy,final byte dz,
+                          final int contents,final int[] slots) {
+                this.id = id;
+                this.properties = properties;
+                this.dx = dx;
+                this.dy = dy;
+                this.dz = dz;
+                this.contents = contents;
+                this.slots = slots;
+            }
+            
+            /**@return The id of the block, with the block state.*/
+            public String state() {
+                if(properties == null) return id;
+                final StringBuilder sb = new StringBuilder(id).append('[');
+                for(final String[] s : properties) sb.append(s[0]).append('=').append(s[1]).append(',');
+                sb.setCharAt(sb.length() - 1,']');
+                return sb.toString();
+            }
+            
+            /**Writes the setblock command which places the block.*/
+            public void write(final CommandWriter w) throws IOException {
+                w.append("setblock ~").append(dx == 0? "" : String.valueOf(dx)).append(" ~").append(dy == 0? "" : String.valueOf(dy))
+                 .append(" ~").append(dz == 0? "" : String.valueOf(dz)).append(' ').append(state());
+                if(contents != NONE) items(w,contents);
+                else if(slots != null) {
+                    w.append("{Items:[");
+                    for(byte s = 0;s < slots.length;++s) {
+                        if(slots[s] == NONE) continue;
+                        w.append(s == 0? "{Slot:" : ",{Slot:").append(s).append(',');
+                        box(w,slots[s]);
+                        w.append('}');
+                    }
+                    w.append("]}");
+                }
+            }
+            /**Writes the block as an element of a structure's <code>blocks</code> list.*/
+            public void write(final NbtWriter nbt,final int state) throws IOException {
+                nbt.compound(null).putInt("state",state)
+                   .list("pos",NbtWriter.INT,3).putInt(null,dx).putInt(null,dy).putInt(null,dz);
+                if(contents != NONE || slots != null) {
+                    nbt.compound("nbt").putString("id","minecraft:"+(id.endsWith("shulker_box")? "shulker_box" : id));
+                    if(contents != NONE) items(nbt,contents);
+                    else {
+                        int n = 0;
+                        for(final int b : slots) if(b != NONE) ++n;
+                        nbt.list("Items",NbtWriter.COMPOUND,n);
+                        for(byte s = 0;s < slots.length;++s) if(slots[s] != NONE) box(nbt,slots[s],s);
+                    }
+                    nbt.end();
+                }
+                nbt.end();
+            }
+        }
+        
+        private static final byte[] INV_OFFSET = new byte[] {3,2,1,1,2,3};
+        /**@return A generic inventory.*/
+        private final Block inventory(final int idx,final int[] boxes) {
+            final byte nidx = (byte)(idx % 6);
+            final boolean hopper = nidx == 2 || nidx == 5;
+            return new Block(
+                hopper? "hopper" : "chest",
+                hopper? new String[][] {new String[] {"facing",nidx == 2? "east" : "west"}} :
+                        new String[][] {new String[] {"type",nidx == 0 || nidx == 4? "right" : "left"}},
+                INV_OFFSET[nidx],(byte)(idx / 3 + (nidx > 3? 1 : 0) + 2),(byte)0,
+                NONE,boxes
+            );
+        }
+        /**
+         * Fills the next slots of an inventory.
+         * 
+         * @param inv Inventory to fill.
+         * @param size Amount of items in the inventory.
+         * @param initial <code>true</code> if the first slot is empty.
+         */
+        private final void getNBT(final int[] inv,final byte size,final boolean initial) {
+            if(initial) inv[0] = pop();
+            for(byte s = 1;s < size;++s) inv[s] = pop();
+        }
+        /**
+         * Gets a standard double chest. This basically ensures that the double chest
+         * is treated as a contiguous inventory instead of two disjoint parts.
+         * 
+         * @param a First inventory.
+         * @param b Second inventory.
+         * @param odd <code>true</code> if the delta y is odd.
+         */
+        private final void getDC(final int[] a,final int[] b,final boolean odd) {getNBT(odd? b : a,CHEST_SIZE,false); getNBT(odd? a : b,CHEST_SIZE,true);}
+        /**
+         * @return Every block placed by the module, in the order they are placed. The module
+         *         must have been stripped and must not be empty.
+         */
+        private final List<Block> blocks() {
+            final int total = nboxes(),
+                      nboxes = total - 3;
+            
+            // The boxes are only counted, so the module can be written any number of times.
+            read = 0;
+            final int shulker = pop(),
+                      dispenser = read < total? pop() : NONE,
+                      hopper = read < total? pop() : NONE;
+            int[][] inv = null;
+            if(read < total) { // Remainder boxes
+                final int nInv;
+                final byte type,nfinal;
+                final boolean dbl;
+                {
+                    final byte group = DBL_SIZE + HOPPER_SIZE;
+                    {
+                        int m = nboxes % group;
+                        
+                        // Perfect grouping
+                        if(m == 0) {type = 0; nfinal = 0; dbl = false;}
+                        // Double chest + partial hopper
+                        else if((dbl = m > CHEST_SIZE) && (m -= CHEST_SIZE) > CHEST_SIZE)
+                        {type = 2; nfinal = (byte)((m - CHEST_SIZE) % HOPPER_SIZE);}
+                        // Single/double chest
+                        else {type = 1; nfinal = (byte)(m % CHEST_SIZE);}
+                    }
+                    nInv = inventories(nboxes);
+                }
+                inv = new int[nInv][CHEST_SIZE];
+                for(final int[] i : inv) Arrays.fill(i,NONE);
+                {
+                    for(int i = 0;i < nInv;++i) {
+                        // Inventory pattern: t f t f t t
+                        // 'f' indicates the right half of a chest, which
+                        // never gets initialized with a Slot:0.
+                        final byte v = (byte)(i % 6);
+                        // The exception to the pattern is if the last inventory is a
+                        // single chest.
+                        if(!(v == (byte)1 || v == (byte)3) || (type == (byte)1 && !dbl && i == nInv - 1))
+                            inv[i][0] = pop();
+                    }
+                }
+                int y = (nInv / 3) + (nInv % 3 > 0? 1 : 0);
+                boolean odd = y % 2 == 1;
+                int cursor = nInv;
+                if(type == 1) {
+                    // If nfinal is zero, then it is actually filled perfectly.
+                    final byte nf = nfinal == 0? CHEST_SIZE : nfinal;
+                    
+                    // The first inventory to fill should be the left-most chest. 'cursor'
+                    // will need to be adjusted by one if there are two chests and the
+                    // delta y is odd. If there are two chests, then the first should be
+                    // filled completely.
+                    getNBT(inv[--cursor - (dbl && odd? 1 : 0)],dbl? CHEST_SIZE : nf,false);
+                    
+                    // If double, then the right chest must be filled with the remainder.
+                    if(dbl) getNBT(inv[--cursor + (odd? 1 : 0)],nf,true);
+                    
+                } else if(type == 2) {
+                    // The first inventory must be a hopper.
+                    getNBT(inv[--cursor],nfinal,false);
+                    
+                    getDC(inv[--cursor],inv[--cursor],odd);
+                }
+                
+                if(type != 0) {--y; odd ^= true;}
+                
+                if(read < total) { // All other boxes
+                    // Loop through the delta y groups. The first inventory is always
+                    // a hopper. If odd, the next is a chest without a Slot:0.
+                    while(y > 0) {
+                        // The first inventory must be a hopper.
+                        getNBT(inv[--cursor],HOPPER_SIZE,false);
+                        
+                        getDC(inv[--cursor],inv[--cursor],odd);
+                        
+                        --y; odd ^= true;
+                    }
+                }
+            }
+            
+            final List<Block> out = new ArrayList<>();
+            out.add(new Block("red_shulker_box",new String[][] {new String[] {"facing","west"}},(byte)1,(byte)0,(byte)0,shulker,null));
+            if(dispenser != NONE)
+                out.add(new Block("dispenser",new String[][] {new String[] {"facing","down"}},(byte)1,(byte)1,(byte)0,
+                                  NONE,new int[] {dispenser}));
+            if(hopper != NONE) { // Locked hopper box
+                out.add(new Block("white_concrete",null,(byte)3,(byte)1,(byte)1,NONE,null));
+                out.add(new Block("redstone_wall_torch",null,(byte)3,(byte)1,(byte)0,NONE,null));
+                out.add(new Block("hopper",new String[][] {new String[] {"facing","west"},
+                                                            new String[] {"enabled","false"}},(byte)2,(byte)1,(byte)0,
+                                  NONE,new int[] {hopper}));
+            }
+            // If there is only one chest, then the index is manually shifted to account
+            // for the first hopper's weird position.
+            if(inv != null) for(int i = 0;i < inv.length;++i) out.add(inventory(inv.length == 1? 1 : i,inv[i]));
+            return out;
+        }
+        /**
+         * Writes the falling command blocks which generate the module. The module must have
+         * been stripped and must not be empty.
+         */
+        private final void commands(final CommandWriter w) throws IOException {
+            // Each command block rides the one before it, so the brackets of all of them
+            // are closed at the end.
+            int riders = 0;
+            for(final Block b : blocks()) {
+                if(riders++ == 0) falling(w,true);
+                else falling(w,false);
+                b.write(w);
+                fallen(w);
+            }
+            // Delete the command block and the chain command block.
+            falling(w,false);
+            w.append("fill ~ ~ ~ ~ ~ ~-1 air");
+            fallen(w);
+            while(riders-- > 0) w.append(FALLING_4);
+            w.append('}');
+        }
+        /**Data version of the game versions the structures are written for.*/
+        private static final int DATA_VERSION = 2586;
+        /**
+         * Writes the blocks placed by the module as a structure, relative to the sign. The
+         * module must have been stripped and must not be empty.
+         */
+        public void structure(final NbtWriter nbt) throws IOException {
+            final List<Block> blocks = blocks();
+            final Map<String,Integer> palette = new LinkedHashMap<>();
+            final List<Block> states = new ArrayList<>();
+            int sx = 1,sy = 1,sz = 1;
+            for(final Block b : blocks) {
+                if(palette.putIfAbsent(b.state(),palette.size()) == null) states.add(b);
+                sx = Math.max(sx,b.dx + 1);
+                sy = Math.max(sy,b.dy + 1);
+                sz = Math.max(sz,b.dz + 1);
+            }
+            
+            nbt.compound("").putInt("DataVersion",DATA_VERSION)
+               .list("size",NbtWriter.INT,3).putInt(null,sx).putInt(null,sy).putInt(null,sz)
+               .list("palette",NbtWriter.COMPOUND,states.size());
+            for(final Block b : states) {
+                nbt.compound(null).putString("Name","minecraft:"+b.id);
+                if(b.properties != null) {
+                    nbt.compound("Properties");
+                    for(final String[] p : b.properties) nbt.putString(p[0],p[1]);
+                    nbt.end();
+                }
+                nbt.end();
+            }
+            nbt.list("blocks",NbtWriter.COMPOUND,blocks.size());
+            for(final Block b : blocks) b.write(nbt,palette.get(b.state()));
+            nbt.list("entities",NbtWriter.COMPOUND,0).end();
+        }
+        
+        /**Writes the sign which generates this module. The module must have been stripped and must not be empty.*/
+        public void write(final CommandWriter w) throws IOException {sign(w);}
+        /**Writes a command which gives the sign which generates this module.*/
+        public void give(final CommandWriter w) throws IOException {w.append("give @s oak_sign"); tag(w);}
+        
+        /**@return The amount of inventories needed for the boxes after the first three.*/
+        private static final int inventories(final int nboxes) {
+            if(nboxes <= 0) return 0;
+            final byte group = DBL_SIZE + HOPPER_SIZE;
+            final int m = nboxes % group,
+                      n = 3 * (nboxes / group);
+            // Perfect grouping, single chest, double chest, double chest + partial hopper.
+            return m == 0? n : m <= CHEST_SIZE? n + 1 : m - CHEST_SIZE <= CHEST_SIZE? n + 2 : n + 3;
+        }
+        /**
+         * @param masks Firing mask of each shot, in firing order.
+         * 
+         * @return The total amount of boxes and inventories needed by all the modules.
+         */
+        public static int[] count(final int[] masks) {
+            final int[] out = new int[2];
+            for(byte i = 0;i < MODULES.length * 2;++i) {
+                final Module m = new Module(null,null);
+                for(final int mask : masks) m.put((mask >>> i & 1) != 0);
+                if(!m.strip()) continue;
+                final int nboxes = m.nboxes();
+                out[0] += nboxes;
+                out[1] += inventories(nboxes - 3);
+            }
+            return out;
+        }
+    }
+    
+    /**
+     * "Does the thing (tm)"
+     * 
+     * @param file Path of image.
+     * @param comparator Function to compare {@linkplain DrawResult}s.
+     * @param debug <code>true</code> to draw every candidate instead of only the best.
+     * @param log Stream which receives the statistics.
+     * 
+     * @return The best shot placement.
+     */
+    static final DrawResult execute(final String file,final Comparator comparator,final boolean debug,final PrintStream log)
+                                    throws IOException {
+        /* ==== Optimize the Shot Placement  ==== */
+        
+        log.println(file);
+        
+        final PlanContext ctx = new PlanContext();
+        ctx.createMap(file);
+        
+        final String nf = file.substring(0,file.lastIndexOf('.'));
+        DrawResult best;
+        final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try(final ShotPlanner planner = new ShotPlanner(comparator,pool,log,debug)) {
+            best = planner.plan(ctx,nf);
+            // Keep refining the best plan for as long as the budget allows.
+            if(REFINE_BUDGET > 0) {
+                final DrawResult refined = Annealer.refine(ctx,best,REFINE_BUDGET,pool,nf+"refined.png");
+                log.println("refine:");
+                log.println("\t#  tnt:"+best.nshots+" -> "+refined.nshots);
+                log.println();
+                if(comparator.compare(best,refined) == refined) ctx.draw(best = refined);
+            }
+            // Find out how far the plan is from optimal, and use the optimal plan if it
+            // was found in time. Grouping the centres can take the whole budget, in which
+            // case nothing was searched.
+            final ExactCover exact = EXACT_BUDGET > 0? ctx.exact(best,EXACT_BUDGET,pool,nf+"exact.png") : null;
+            if(exact != null) {
+                log.println("exact:");
+                log.println("\t#  tnt:"+exact.result.nshots);
+                log.println("\t#  min:"+exact.lower);
+                log.println("\t%  gap:"+exact.gap());
+                log.println("\t# done:"+exact.proven+"/"+exact.groups);
+                log.println();
+                if(comparator.compare(best,exact.result) == exact.result) ctx.draw(best = exact.result);
+            }
+        } finally {pool.shutdown();}
+        
+        printResult(log,"best",best);
+        
+        /* ==== Generate the Boxes ==== */
+        
+        final Module[] modules = modules(order(log,best));
+        // Write the function file.
+        try(final BufferedWriter w = Files.newBufferedWriter(Paths.get(nf.substring(0,nf.lastIndexOf(File.separatorChar)),"cmd.mcfunction")))
+        {writeCommand(w,modules);}
+        catch(final IOException e) {e.printStackTrace();}
+        // Write the datapack, with one function per module so that no single command has
+        // to hold every module. Each module is also saved as a structure, which loads much
+        // faster than the text of its commands.
+        try {writeDatapack(Paths.get(nf+".zip"),nf.substring(nf.lastIndexOf(File.separatorChar) + 1),modules);}
+        catch(final IOException e) {e.printStackTrace();}
+        return best;
+    }
+    /**
+     * @param masks Firing mask of each shot, in firing order.
+     * 
+     * @return Every module, with each shot plugged in.
+     */
+    static Module[] modules(final int[] masks) {
+        final byte l = (byte)(MODULES.length * 2);
+        final Module[] modules = new Module[l];
+        // Initialize the modules with proper names.
+        final Map<String,Module.Fragment> fragments = new HashMap<>();
+        for(byte i = 0;i < l;++i) modules[i] = new Module((i < MODULES.length? "X" : "Z") + ' ' + String.valueOf(MODULES[i % MODULES.length]),fragments);
+        
+        // Plug each shot's firing mask into the modules.
+        for(final int m : masks) for(byte i = 0;i < l;++i) modules[i].put((m >>> i & 1) != 0);
+        return modules;
+    }
+    /**Writes a single command which gives a chest holding the sign of every module.*/
+    static void writeCommand(final Writer w,final Module[] modules) throws IOException {
+        // Every module is written straight to the stream as it is generated.
+        final CommandWriter cw = new CommandWriter(w);
+        cw.append("give @s chest{display:{Name:").quote()
+          .append("{\"text\":\"\\u00A7e\\u00A7l").append(aestheticize("Modules")).append("\"}").unquote()
+          .append("},BlockEntityTag:{Items:[");
+        byte slot = -1;
+        for(final Module m : modules) {
+            if(!m.strip()) continue;
+            if(slot != -1) cw.append(',');
+            cw.append("{Slot:").append(++slot).append(',');
+            m.write(cw);
+            cw.append('}');
+        }
+        cw.append("]}}");
+    }
+    /**
+     * Writes a datapack with a function and a structure for every module.
+     * 
+     * @param file Zip file to create.
+     * @param name Namespace of the datapack.
+     * @param modules Modules to write.
+     */
+    static void writeDatapack(final Path file,final String name,final Module[] modules) throws IOException {
+        try(final Datapack dp = new Datapack(file,name,"cmd","Cannon modules for "+name)) {
+            for(byte i = 0;i < modules.length;++i) {
+                if(!modules[i].strip()) continue;
+                final byte j = (byte)(i % MODULES.length);
+                final String id = (i < MODULES.length? "x" : "z")+j+'_'+MODULES[j];
+                modules[i].give(new CommandWriter(dp.add(id)));
+                try(final NbtWriter nbt = new NbtWriter(new GZIPOutputStream(dp.structure(id)))) {modules[i].structure(nbt);}
+            }
+        }
+    }
+    
+    public static void main(final String[] args) {
+        // Drawing every candidate is only useful when debugging the search.
+        final boolean debug = args.length > 0 && args[0].equals("--debug");
+        final JFileChooser fc = new JFileChooser();
+        fc.addChoosableFileFilter(new FileFilter() {
+            @Override
+            public String getDescription() {return "image file";}
+            
+            public String getExtension(final File f) {
+                String ext = null;
+                final String s = f.getName();
+                final int i = s.lastIndexOf('.');
+                
+                if(i > 0 && i < s.length() - 1) ext = s.substring(i + 1).toLowerCase();
+                return ext;
+            }
+            
+            @Override
+            public boolean accept(File f) {
+                if(f.isDirectory()) return true;
+                
+                final String extension = getExtension(f);
+                return (extension != null &&
+                       (extension.equals("tiff") || extension.equals("tif") || extension.equals("gif") ||
+                        extension.equals("jpeg") || extension.equals("jpg") || extension.equals("png")));
+            }
+        });
+        if(fc.showOpenDialog(null) != JFileChooser.APPROVE_OPTION) System.exit(0);
+        final String file = fc.getSelectedFile().getAbsolutePath();
+        try {execute(file,BEST,debug,out);}
+        catch(final IOException e) {e.printStackTrace();}
+    }
+}
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
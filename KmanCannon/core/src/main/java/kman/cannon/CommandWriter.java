@@ -0,0 +1,53 @@
+package kman.cannon;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes a command straight to a stream while keeping track of how many quoted strings
+ * the text is nested in. Every quote and backslash is escaped once for each enclosing
+ * string, so each layer can be written as plain text instead of being built and then
+ * escaped by the layer around it.
+ */
+final class CommandWriter {
+    private final Writer out;
+    /**Amount of quoted strings the text is currently in.*/
+    private int depth = 0;
+    /**Backslashes to write before a quote at the current depth.*/
+    private String escape = "";
+    
+    /**@param out Stream to write to. It is not closed by this writer.*/
+    CommandWriter(final Writer out) {this.out = out;}
+    
+    /**Writes the text, escaping it for the current depth.*/
+    CommandWriter append(final CharSequence s) throws IOException {
+        if(depth == 0) {out.append(s); return this;}
+        for(int i = 0;i < s.length();++i) append(s.charAt(i));
+        return this;
+    }
+    /**Writes the character, escaping it for the current depth.*/
+    CommandWriter append(final char c) throws IOException {
+        if(c == '"') out.append(escape).append('"');
+        else if(c == '\\') out.append(escape).append('\\');
+        else out.append(c);
+        return this;
+    }
+    /**Writes the number.*/
+    CommandWriter append(final int i) throws IOException {out.append(Integer.toString(i)); return this;}
+    
+    /**Opens a quoted string. Anything written until the matching {@linkplain #unquote()} is inside it.*/
+    CommandWriter quote() throws IOException {
+        append('"');
+        escape = escape + '\\' + escape;
+        ++depth;
+        return this;
+    }
+    /**Closes the innermost quoted string.*/
+    CommandWriter unquote() throws IOException {
+        if(depth == 0) throw new IllegalStateException("No string to close");
+        --depth;
+        escape = escape.substring(0,escape.length() / 2);
+        append('"');
+        return this;
+    }
+}
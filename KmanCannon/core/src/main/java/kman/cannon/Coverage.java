@@ -0,0 +1,109 @@
+package kman.cannon;
+
+import static kman.cannon.Canary.IMG_WIDTH;
+import static kman.cannon.Canary.RADIUS;
+
+import java.util.Arrays;
+
+/**
+ * Counts how many shots hit each pixel. The damage, misses and overlap of a plan are
+ * updated as each shot is added or removed, so scoring a plan never needs a pass over
+ * the whole image.
+ */
+public final class Coverage {
+    /**Foreground map, as packed by {@linkplain PlanContext}.*/
+    private final long[][] map;
+    /**Amount of shots which hit each pixel, in row-major order.*/
+    private final byte[] hits = new byte[IMG_WIDTH * IMG_WIDTH];
+    private int ndamage = 0,nmiss = 0,noverlap = 0,nshots = 0;
+    
+    /**@param map Foreground map, which is only ever read.*/
+    Coverage(final long[][] map) {this.map = map;}
+    
+    /**@return The amount of damaged pixels.*/
+    public int ndamage() {return ndamage;}
+    /**@return The amount of damaged background pixels.*/
+    public int nmiss() {return nmiss;}
+    /**@return The amount of hits on pixels which were already damaged.*/
+    public int noverlap() {return noverlap;}
+    /**@return The amount of shots.*/
+    public int nshots() {return nshots;}
+    
+    /**@return <code>true</code> if the pixel is damaged.*/
+    public boolean damaged(final int r,final int c) {return hits[r * IMG_WIDTH + c] != 0;}
+    /**@return <code>true</code> if the pixel is foreground.*/
+    private boolean foreground(final int r,final int c) {return (map[r][c >>> 6] & 1L << c) != 0L;}
+    
+    /**
+     * @param r Row of the shot.
+     * @param c Column of the shot.
+     * 
+     * @return The amount of pixels which the shot would newly damage.
+     */
+    public int gain(final int r,final int c) {
+        int n = 0;
+        for(int nr = r - RADIUS;nr <= r + RADIUS;++nr) {
+            final int i = nr * IMG_WIDTH + c;
+            for(int j = i - RADIUS;j <= i + RADIUS;++j) if(hits[j] == 0) ++n;
+        }
+        return n;
+    }
+    /**
+     * Adds a shot.
+     * 
+     * @param r Row of the shot.
+     * @param c Column of the shot.
+     * 
+     * @return The amount of pixels which were newly damaged.
+     */
+    public int add(final int r,final int c) {
+        int n = 0;
+        for(int nr = r - RADIUS;nr <= r + RADIUS;++nr) {
+            final int i = nr * IMG_WIDTH;
+            for(int nc = c - RADIUS;nc <= c + RADIUS;++nc)
+                if(hits[i + nc]++ == 0) {
+                    ++n;
+                    if(!foreground(nr,nc)) ++nmiss;
+                } else ++noverlap;
+        }
+        ndamage += n;
+        ++nshots;
+        return n;
+    }
+    /**
+     * Removes a shot which was previously added.
+     * 
+     * @param r Row of the shot.
+     * @param c Column of the shot.
+     * 
+     * @return The amount of pixels which are no longer damaged.
+     */
+    public int remove(final int r,final int c) {
+        int n = 0;
+        for(int nr = r - RADIUS;nr <= r + RADIUS;++nr) {
+            final int i = nr * IMG_WIDTH;
+            for(int nc = c - RADIUS;nc <= c + RADIUS;++nc)
+                if(--hits[i + nc] == 0) {
+                    ++n;
+                    if(!foreground(nr,nc)) --nmiss;
+                } else --noverlap;
+        }
+        ndamage -= n;
+        --nshots;
+        return n;
+    }
+    
+    /**Removes every shot.*/
+    void clear() {
+        Arrays.fill(hits,(byte)0);
+        ndamage = nmiss = noverlap = nshots = 0;
+    }
+    /**Replaces this coverage with a copy of another one over the same map.*/
+    void copy(final Coverage c) {
+        System.arraycopy(c.hits,0,hits,0,hits.length);
+        ndamage = c.ndamage;
+        nmiss = c.nmiss;
+        noverlap = c.noverlap;
+        nshots = c.nshots;
+    }
+}
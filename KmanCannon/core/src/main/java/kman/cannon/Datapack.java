@@ -0,0 +1,101 @@
+package kman.cannon;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams a datapack into a zip file which can be dropped straight into a world's
+ * <code>datapacks</code> folder. Each function is written as its own entry, and closing
+ * the pack adds a dispatcher function which runs all of them. Structures can be added
+ * the same way.
+ */
+final class Datapack implements Closeable {
+    /**Pack format of the game versions the commands are written for.*/
+    private static final int PACK_FORMAT = 6;
+    
+    private final ZipOutputStream zip;
+    private final Writer out;
+    private final String namespace,dispatcher;
+    private final List<String> functions = new ArrayList<>();
+    
+    /**
+     * @param file Zip file to create.
+     * @param namespace Namespace of the functions. Any characters which the game does not
+     *                  allow are replaced.
+     * @param dispatcher Name of the function which runs every other function.
+     * @param description Description shown in the game's datapack list.
+     */
+    Datapack(final Path file,final String namespace,final String dispatcher,final String description) throws IOException {
+        zip = new ZipOutputStream(Files.newOutputStream(file));
+        out = new BufferedWriter(new OutputStreamWriter(zip,StandardCharsets.UTF_8));
+        this.namespace = id(namespace);
+        this.dispatcher = id(dispatcher);
+        entry("pack.mcmeta");
+        out.append("{\"pack\":{\"pack_format\":").append(Integer.toString(PACK_FORMAT))
+           .append(",\"description\":\"").append(description.replace("\\","\\\\").replace("\"","\\\"")).append("\"}}");
+    }
+    
+    /**@return The string with every character which is not allowed in an id replaced.*/
+    static final String id(final String s) {
+        final StringBuilder sb = new StringBuilder(s.length());
+        for(final char c : s.toLowerCase().toCharArray())
+            sb.append((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_' || c == '-' || c == '.'? c : '_');
+        return sb.toString();
+    }
+    /**Starts a new entry. Anything written before it is flushed into the previous entry.*/
+    private void entry(final String path) throws IOException {
+        out.flush();
+        zip.putNextEntry(new ZipEntry(path));
+    }
+    /**
+     * Starts a new function. It is run by the dispatcher in the order the functions are
+     * added.
+     * 
+     * @return The stream to write the commands of the function to. It is only valid until
+     *         the next function is started.
+     */
+    Writer add(final String name) throws IOException {
+        final String id = id(name);
+        if(id.equals(dispatcher) || functions.contains(id)) throw new IllegalArgumentException("Duplicate function:"+id);
+        functions.add(id);
+        entry("data/"+namespace+"/functions/"+id+".mcfunction");
+        return out;
+    }
+    
+    /**
+     * Starts a new structure.
+     * 
+     * @return The stream to write the structure to. Closing it only ends the entry, and it
+     *         is only valid until the next function or structure is started.
+     */
+    OutputStream structure(final String name) throws IOException {
+        entry("data/"+namespace+"/structures/"+id(name)+".nbt");
+        return new FilterOutputStream(zip) {
+            @Override public void write(final byte[] b,final int off,final int len) throws IOException {zip.write(b,off,len);}
+            @Override public void close() throws IOException {zip.closeEntry();}
+        };
+    }
+    
+    /**Writes the dispatcher and finishes the zip file.*/
+    @Override
+    public void close() throws IOException {
+        try {
+            entry("data/"+namespace+"/functions/"+dispatcher+".mcfunction");
+            for(final String f : functions) out.append("function ").append(namespace).append(':').append(f).append('\n');
+            out.flush();
+            zip.closeEntry();
+        } finally {out.close();}
+    }
+}
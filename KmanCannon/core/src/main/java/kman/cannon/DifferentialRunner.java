@@ -0,0 +1,153 @@
+package kman.cannon;
+
+import static kman.cannon.Canary.COVERAGE;
+import static kman.cannon.Canary.IMG_WIDTH;
+import static kman.cannon.Canary.RADIUS;
+import static kman.cannon.Canary.SHOT;
+import static kman.cannon.Canary.STEP;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import kman.cannon.Canary.DrawResult;
+import kman.cannon.Workloads.Kind;
+
+/**
+ * Runs the old {@linkplain ImageProcessor} and {@linkplain Canary} over the same maps, so
+ * that any change to Canary's scanning or drawing can be checked against a fixed
+ * reference for both speed and correctness.
+ * <p>
+ * For every map, the runner checks that:
+ * <ul>
+ * <li>Each east main-sequence line draws exactly the same image as the old planner's line
+ *     with the same offset.</li>
+ * <li>Each widest east anti-aliasing pass damages exactly the same pixels as the old
+ *     planner's pass. Canary lists each line from its last shot, so the shots which the
+ *     pass keeps may differ.</li>
+ * <li>Canary's best result is at least as accurate as the old planner's most accurate
+ *     result, and misses no more pixels when they are equally accurate.</li>
+ * </ul>
+ * The wall time of both planners, their shots, accuracy and efficiency, the amount of
+ * differing pixels, whether the bounds hold and Canary's search budgets are written to
+ * <code>diff.tsv</code>. The searches with a time budget are off unless their system
+ * properties are set, since the old planner has none of them.
+ * Allocation is measured by <code>DifferentialBenchmark</code> with JMH's GC profiler.
+ * <p>
+ * Usage: <code>DifferentialRunner [directory] [seed] [image...]</code>. Every synthetic
+ * workload is generated from the seed, and any extra images are copied into the
+ * directory and checked as well. The process exits with status 1 if any check fails.
+ */
+public final class DifferentialRunner {
+    private DifferentialRunner() {}
+    
+    /**System properties of the searches which run for a fixed time.*/
+    private static final String[] BUDGETS = new String[] {"kman.cannon.order","kman.cannon.refine","kman.cannon.exact"};
+    /**Stream which throws away everything written to it.*/
+    private static final PrintStream NULL = new PrintStream(new OutputStream() {
+        @Override public void write(final int b) {}
+        @Override public void write(final byte[] b,final int off,final int len) {}
+    });
+    
+    /**@return <code>true</code> if the pixel is drawn as damaged, either by coverage or by a shot.*/
+    private static final boolean damaged(final int rgb) {return rgb == SHOT || rgb == COVERAGE[0] || rgb == COVERAGE[1];}
+    /**
+     * @param shots <code>false</code> to ignore where the shots are, as long as the same
+     *              pixels are damaged.
+     * 
+     * @return The amount of pixels which differ between the two images.
+     */
+    private static final int diff(final File a,final File b,final boolean shots) throws IOException {
+        final BufferedImage x = ImageIO.read(a),y = ImageIO.read(b);
+        int n = 0;
+        for(int r = 0;r < IMG_WIDTH;++r)
+            for(int c = 0;c < IMG_WIDTH;++c) {
+                final int p = x.getRGB(c,r),q = y.getRGB(c,r);
+                if(p != q && (shots || !damaged(p) || !damaged(q))) ++n;
+            }
+        return n;
+    }
+    
+    public static void main(final String[] args) throws IOException {
+        // Canary reads the budgets when it is loaded, so they must be pinned before that.
+        for(final String budget : BUDGETS) if(System.getProperty(budget) == null) System.setProperty(budget,"0");
+        final File dir = new File(args.length > 0? args[0] : "differential");
+        final long seed = args.length > 1? Long.parseLong(args[1]) : 0L;
+        Files.createDirectories(dir.toPath());
+        
+        // Every map is written to the directory first, since both planners read files.
+        final List<String> maps = new ArrayList<>();
+        for(final Kind kind : Kind.values()) {
+            final String name = kind.name().toLowerCase();
+            ImageIO.write(Workloads.generate(kind,.5,seed),"png",new File(dir,name+".png"));
+            maps.add(name);
+        }
+        for(int i = 2;i < args.length;++i) {
+            final String name = new File(args[i]).getName().replaceFirst("\\.[^.]*$","");
+            ImageIO.write(ImageIO.read(new File(args[i])),"png",new File(dir,name+".png"));
+            maps.add(name);
+        }
+        
+        boolean pass = true;
+        final PrintStream stdout = System.out;
+        try(final PrintWriter tsv = new PrintWriter(new File(dir,"diff.tsv"),"UTF-8")) {
+            final String header = "map\told ms\tnew ms\told shots\tnew shots\told acc\tnew acc\told eff\tnew eff\tdiff px\tbounds\tbudgets";
+            tsv.println(header);
+            stdout.println(header);
+            for(final String name : maps) {
+                final String nf = new File(dir,name).getPath(),
+                             file = nf+".png";
+                
+                // The old planner always prints everything and draws every candidate.
+                final DrawResult dr;
+                final ImageProcessor.DrawResult old;
+                final double oldMs,newMs;
+                System.setOut(NULL);
+                try {
+                    long start = System.nanoTime();
+                    old = ImageProcessor.execute(nf);
+                    oldMs = (System.nanoTime() - start) / 1e6;
+                    start = System.nanoTime();
+                    dr = Canary.execute(file,Canary.BEST,false,NULL);
+                    newMs = (System.nanoTime() - start) / 1e6;
+                } finally {System.setOut(stdout);}
+                
+                // Draw every candidate without timing it. The old planner names each line
+                // by its offset alone. Its anti-aliasing passes always fill with the widest
+                // factor, so each of them damages the same pixels as Canary's widest pass.
+                {
+                    final PlanContext ctx = new PlanContext();
+                    ctx.createMap(file);
+                    try(final ShotPlanner planner = new ShotPlanner(Canary.BEST,null,true)) {planner.plan(ctx,nf);}
+                }
+                int px = 0;
+                for(int o = 0;o < STEP;++o) {
+                    final int line = diff(new File(nf+o+".png"),new File(nf+o+"-east.png"),true),
+                              aa = diff(new File(nf+"AA_"+o+"-0.png"),new File(nf+"AA_"+o+'-'+RADIUS+"-east.png"),false);
+                    if(line != 0) System.err.println(name+": offset "+o+" differs by "+line+" pixels");
+                    if(aa != 0) System.err.println(name+": anti-aliasing of offset "+o+" differs by "+aa+" pixels");
+                    px += line + aa;
+                }
+                final boolean bounds = dr.acc > old.acc || dr.acc == old.acc && dr.nmiss <= old.nmiss;
+                if(!bounds) System.err.println(name+": accuracy "+dr.acc+" with "+dr.nmiss+" misses is worse than "+old.acc+
+                                               " with "+old.nmiss);
+                pass &= bounds && px == 0;
+                
+                final String row = String.format("%s\t%.1f\t%.1f\t%d\t%d\t%.3f\t%.3f\t%.3f\t%.3f\t%d\t%s\t%s",name,oldMs,newMs,
+                                                 old.nshots,dr.nshots,old.acc,dr.acc,old.eff,dr.eff,px,bounds? "ok" : "FAIL",
+                                                 Canary.budgets());
+                tsv.println(row);
+                stdout.println(row);
+            }
+        }
+        if(!pass) System.exit(1);
+    }
+}
@@ -0,0 +1,519 @@
+package kman.cannon;
+
+import static kman.cannon.Canary.IMG_WIDTH;
+import static kman.cannon.Canary.RADIUS;
+import static kman.cannon.Canary.STEP;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import kman.cannon.Canary.DrawResult;
+
+/**
+ * Searches for the fewest shots which damage every pixel that any valid centre can
+ * damage, without missing anything. It is an anytime branch and bound: it always holds
+ * the best plan found so far, seeded from the heuristic plans, along with a lower bound
+ * on the optimum, so the gap between them shows how far the plan can be from optimal.
+ * <p>
+ * Centres whose footprints overlap are connected, and every pixel is only damaged by
+ * centres from one group of connected centres, so each group is solved on its own in
+ * parallel. A group branches on the undamaged pixel with the fewest centres left to
+ * damage it, trying each of those centres in turn and excluding it from the branches
+ * after it. The root is bounded by a packing of pixels, an LP dual and a Lagrangian
+ * relaxation, and the best of their multipliers bound every node below it. That bound
+ * is kept up to date as centres are chosen and excluded, so the cost of a node barely
+ * grows with the size of the group.
+ */
+final class ExactCover {
+    /**Best plan found.*/
+    final DrawResult result;
+    /**Lower bound of the amount of shots in any plan which never misses.*/
+    final int lower;
+    /**Amount of groups of connected centres, and how many of them were solved optimally.*/
+    final int groups,proven;
+    
+    private ExactCover(final DrawResult result,final int lower,final int groups,final int proven) {
+        this.result = result;
+        this.lower = lower;
+        this.groups = groups;
+        this.proven = proven;
+    }
+    
+    /**@return The gap between the plan and the lower bound, as a percentage of the plan.*/
+    double gap() {return result.nshots == 0? 0.0 : 100.0 * (result.nshots - lower) / result.nshots;}
+    
+    /**Fixed point unit of the multipliers which the search keeps up to date, so that they add up exactly.*/
+    private static final long SCALE = 1L << 20;
+    /**Bits of a pixel index.*/
+    private static final int PIXEL_BITS = Integer.SIZE - Integer.numberOfLeadingZeros(IMG_WIDTH * IMG_WIDTH - 1);
+    /**Most subgradient steps at the root, and the steps without a better bound before their size is halved.*/
+    private static final int ROOT_ITERATIONS = 500,STALE = 30;
+    private static final double EPS = 1e-6;
+    /**Width of the window which holds every footprint that damages a pixel, and the amount of words in its mask.*/
+    private static final int WINDOW = 2 * STEP - 1,WINDOW_WORDS = (WINDOW * WINDOW + Long.SIZE - 1) / Long.SIZE;
+    /**Difference between the pixel index of a centre and each pixel of its footprint.*/
+    private static final int[] FOOTPRINT = new int[STEP * STEP];
+    static {
+        int i = 0;
+        for(int dr = -RADIUS;dr <= RADIUS;++dr)
+            for(int dc = -RADIUS;dc <= RADIUS;++dc) FOOTPRINT[i++] = dr * IMG_WIDTH + dc;
+    }
+    
+    /**One group of connected centres and the pixels they damage.*/
+    private static final class Group {
+        /**Pixel index of each centre and each pixel.*/
+        final int[] centres,pixels;
+        /**Group-local index of every centre and pixel, indexed by pixel index. Shared by every group.*/
+        private final int[] cid,pid;
+        /**Amount of shots on each pixel.*/
+        private final int[] hits;
+        /**Amount of centres left which can damage each pixel.*/
+        private final int[] avail;
+        private final boolean[] excluded;
+        private final int[] chosen;
+        private int nchosen = 0,uncovered;
+        /**Multiplier of each pixel, and the reduced cost of each centre, in units of {@linkplain #SCALE}.*/
+        private long[] u,cost;
+        /**Multipliers of the undamaged pixels, and the negative reduced costs of the centres left.*/
+        private long sum = 0L,negative = 0L;
+        /**
+         * Tournament tree of the undamaged pixels, keyed by how many centres are left for
+         * them and then by their index, and where its leaves start.
+         */
+        private int[] tree;
+        private int leaves;
+        /**Centres which can damage the pixel being updated.*/
+        private final int[] around = new int[STEP * STEP];
+        /**Best plan found, as group-local centres.*/
+        int[] best;
+        int lower = 0;
+        boolean proven = false;
+        private long deadline;
+        private boolean timeout = false;
+        
+        Group(final int[] centres,final int[] pixels,final int[] cid,final int[] pid) {
+            this.centres = centres;
+            this.pixels = pixels;
+            this.cid = cid;
+            this.pid = pid;
+            hits = new int[pixels.length];
+            avail = new int[pixels.length];
+            excluded = new boolean[centres.length];
+            chosen = new int[centres.length];
+            uncovered = pixels.length;
+            for(final int c : centres) for(final int d : FOOTPRINT) ++avail[pid[c + d]];
+        }
+        
+        /**@return <code>true</code> once the deadline has passed.*/
+        private boolean expired() {return timeout || (timeout = System.nanoTime() >= deadline);}
+        
+        /**@return The group-local centres which can damage the pixel, whether or not they are excluded.*/
+        private int cover(final int p,final int[] out) {
+            final int r = p / IMG_WIDTH,c = p % IMG_WIDTH;
+            int n = 0;
+            for(int nr = Math.max(RADIUS,r - RADIUS);nr <= Math.min(IMG_WIDTH - 1 - RADIUS,r + RADIUS);++nr)
+                for(int nc = Math.max(RADIUS,c - RADIUS);nc <= Math.min(IMG_WIDTH - 1 - RADIUS,c + RADIUS);++nc) {
+                    final int i = cid[nr * IMG_WIDTH + nc];
+                    if(i >= 0) out[n++] = i;
+                }
+            return n;
+        }
+        
+        /**Updates the key of the pixel in the tree.*/
+        private void update(final int p) {
+            int i = leaves + p;
+            tree[i] = hits[p] == 0? avail[p] << PIXEL_BITS | p : Integer.MAX_VALUE;
+            for(i >>>= 1;i > 0;i >>>= 1) tree[i] = Math.min(tree[2 * i],tree[2 * i + 1]);
+        }
+        /**Moves the multiplier of a pixel out of the bound and into the reduced costs of its centres, or back.*/
+        private void shift(final int p,final long du) {
+            if(du == 0L) return;
+            sum -= du;
+            for(int j = 0,n = cover(pixels[p],around);j < n;++j) {
+                final int c = around[j];
+                final long r = cost[c];
+                cost[c] = r + du;
+                if(!excluded[c]) negative += Math.min(0L,r + du) - Math.min(0L,r);
+            }
+        }
+        private void choose(final int c) {
+            for(final int d : FOOTPRINT) {
+                final int p = pid[centres[c] + d];
+                if(hits[p]++ == 0) {--uncovered; update(p); shift(p,u[p]);}
+            }
+            chosen[nchosen++] = c;
+        }
+        private void unchoose(final int c) {
+            for(final int d : FOOTPRINT) {
+                final int p = pid[centres[c] + d];
+                if(--hits[p] == 0) {++uncovered; update(p); shift(p,-u[p]);}
+            }
+            --nchosen;
+        }
+        private void exclude(final int c,final boolean x) {
+            excluded[c] = x;
+            final boolean ready = tree != null;
+            if(ready) negative += x? -Math.min(0L,cost[c]) : Math.min(0L,cost[c]);
+            for(final int d : FOOTPRINT) {
+                final int p = pid[centres[c] + d];
+                avail[p] += x? -1 : 1;
+                if(ready && hits[p] == 0) update(p);
+            }
+        }
+        
+        /**
+         * Takes the pixels in order of how few centres can damage them, and bounds the plan
+         * two ways. The packing counts the pixels which share no centre with a pixel counted
+         * before them, since each of them needs its own shot. The dual raises the value of
+         * each pixel as far as the slack of its centres allows, and since no centre damages
+         * pixels whose values add up to more than one, every plan has at least as many shots
+         * as the values together. A plan with a centre has at least as many shots as the
+         * dual plus the centre's slack, so each centre whose slack lifts the dual to the
+         * incumbent is excluded for good.
+         * @param out Receives the values of the larger bound.
+         * @return Lower bound of the amount of shots.
+         */
+        private double bound(final double[] out) {
+            // Counting sort of the pixels by their centres.
+            final int[] start = new int[STEP * STEP + 2],order = new int[pixels.length];
+            for(int p = 0;p < pixels.length;++p) ++start[avail[p] + 1];
+            for(int a = 1;a < start.length;++a) start[a] += start[a - 1];
+            for(int p = 0;p < pixels.length;++p) order[start[avail[p]]++] = p;
+            
+            final double[] slack = new double[centres.length];
+            Arrays.fill(slack,1.0);
+            final boolean[] used = new boolean[centres.length],packed = new boolean[pixels.length];
+            double dual = 0.0;
+            int packing = 0;
+            for(final int p : order) {
+                final int k = cover(pixels[p],around);
+                double value = 1.0;
+                boolean free = true;
+                for(int j = 0;j < k;++j) {
+                    value = Math.min(value,slack[around[j]]);
+                    free &= !used[around[j]];
+                }
+                if(free) {
+                    ++packing;
+                    packed[p] = true;
+                    for(int j = 0;j < k;++j) used[around[j]] = true;
+                }
+                if(value <= EPS) continue;
+                dual += value;
+                out[p] = value;
+                for(int j = 0;j < k;++j) slack[around[j]] -= value;
+            }
+            for(int c = 0;c < centres.length;++c) if(dual + slack[c] > best.length - 1 + EPS) exclude(c,true);
+            if(packing <= dual) return dual;
+            for(int p = 0;p < pixels.length;++p) out[p] = packed[p]? 1.0 : 0.0;
+            return packing;
+        }
+        /**
+         * Bounds the group by Lagrangian relaxation of the constraint that each pixel is
+         * damaged, with subgradient steps towards the incumbent. Each centre whose reduced
+         * cost lifts the bound to the incumbent is excluded for good, since it is in no
+         * better plan.
+         * @param multipliers Multipliers of the bound to beat, which receive the better ones.
+         * @param floor Bound to beat.
+         * @param until When to stop, so that the search has time left.
+         * @return Lower bound of the amount of shots.
+         */
+        private double relax(final double[] multipliers,final double floor,final long until) {
+            final double[] u = new double[pixels.length],cost = new double[centres.length];
+            final int[] count = new int[pixels.length];
+            Arrays.fill(u,1.0 / (STEP * STEP));
+            double out = 0.0,step = 2.0,bound = 0.0;
+            int it = 0;
+            for(int stale = 0;it < ROOT_ITERATIONS && System.nanoTime() < until;++it) {
+                bound = 0.0;
+                for(int p = 0;p < pixels.length;++p) {bound += u[p]; count[p] = 0;}
+                for(int c = 0;c < centres.length;++c) {
+                    if(excluded[c]) continue;
+                    double r = 1.0;
+                    for(final int d : FOOTPRINT) r -= u[pid[centres[c] + d]];
+                    cost[c] = r;
+                    if(r >= 0.0) continue;
+                    bound += r;
+                    for(final int d : FOOTPRINT) ++count[pid[centres[c] + d]];
+                }
+                if(bound > out + EPS) {
+                    if(bound > Math.max(out,floor) + EPS) System.arraycopy(u,0,multipliers,0,u.length);
+                    out = bound;
+                    stale = 0;
+                } else if(++stale == STALE) {step /= 2.0; stale = 0;}
+                if(Math.ceil(out - EPS) >= best.length) break;
+                
+                double norm = 0.0;
+                for(int p = 0;p < pixels.length;++p) norm += (1 - count[p]) * (1 - count[p]);
+                // Every pixel is damaged exactly once, so the bound is exact.
+                if(norm == 0.0) break;
+                final double t = step * (best.length - bound) / norm;
+                for(int p = 0;p < pixels.length;++p) u[p] = Math.max(0.0,u[p] + t * (1 - count[p]));
+            }
+            if(it > 0)
+                for(int c = 0;c < centres.length;++c)
+                    if(!excluded[c] && bound + cost[c] > best.length - 1 + EPS) exclude(c,true);
+            return out;
+        }
+        
+        /**
+         * Sets up the bound which the search keeps up to date as it goes: the Lagrangian
+         * bound of the root's multipliers, which holds for every node below it.
+         */
+        private void prepare(final double[] multipliers) {
+            u = new long[pixels.length];
+            cost = new long[centres.length];
+            for(int p = 0;p < pixels.length;++p) sum += u[p] = (long)(multipliers[p] * SCALE);
+            for(int c = 0;c < centres.length;++c) {
+                long r = SCALE;
+                for(final int d : FOOTPRINT) r -= u[pid[centres[c] + d]];
+                cost[c] = r;
+                if(!excluded[c]) negative += Math.min(0L,r);
+            }
+            leaves = Integer.highestOneBit(Math.max(1,pixels.length - 1)) << 1;
+            tree = new int[2 * leaves];
+            Arrays.fill(tree,Integer.MAX_VALUE);
+            for(int p = 0;p < pixels.length;++p) tree[leaves + p] = avail[p] << PIXEL_BITS | p;
+            for(int i = leaves - 1;i > 0;--i) tree[i] = Math.min(tree[2 * i],tree[2 * i + 1]);
+        }
+        /**@return <code>true</code> if no plan below the node, with the extra reduced cost, beats the incumbent.*/
+        private boolean prune(final long extra)
+        {return nchosen * SCALE + Math.max(SCALE,sum + negative + extra) > (best.length - 1) * SCALE;}
+        
+        /**Searches until the group is solved or the deadline passes.*/
+        void solve(final long deadline) {
+            this.deadline = deadline;
+            final double[] multipliers = new double[pixels.length];
+            double root = 0.0;
+            if(!expired()) lower = Math.max(lower,(int)Math.ceil((root = bound(multipliers)) - EPS));
+            if(best.length > lower && !expired()) {
+                final long now = System.nanoTime();
+                lower = Math.max(lower,(int)Math.ceil(relax(multipliers,root,now + (deadline - now) / 2) - EPS));
+            }
+            if(best.length > lower && !expired()) {
+                prepare(multipliers);
+                search();
+            }
+            proven = best.length <= lower || !timeout;
+            if(proven) lower = best.length;
+        }
+        /**
+         * Dives through the nodes with a stack of the centres of each node, so the depth is
+         * not limited by the size of the plan.
+         */
+        private void search() {
+            final int[][] branches = new int[best.length + 1][];
+            final int[] size = new int[best.length + 1],tried = new int[best.length + 1];
+            int depth = 0;
+            boolean enter = true;
+            while(depth >= 0) {
+                final int[] b;
+                if(enter) {
+                    if(expired()) return;
+                    enter = false;
+                    if(branches[depth] == null) branches[depth] = new int[STEP * STEP];
+                    b = branches[depth];
+                    size[depth] = tried[depth] = 0;
+                    if(uncovered == 0) {if(nchosen < best.length) best = Arrays.copyOf(chosen,nchosen);}
+                    else if(!prune(0L)) size[depth] = branch(b);
+                } else {
+                    // Back from the node which chose the last centre tried.
+                    b = branches[depth];
+                    unchoose(b[tried[depth] - 1]);
+                    exclude(b[tried[depth] - 1],true);
+                }
+                // A centre whose reduced cost lifts the bound to the incumbent is in no better plan.
+                while(tried[depth] < size[depth] && prune(Math.max(0L,cost[b[tried[depth]]]))) exclude(b[tried[depth]++],true);
+                if(tried[depth] < size[depth]) {
+                    choose(b[tried[depth]++]);
+                    ++depth;
+                    enter = true;
+                } else {
+                    for(int i = 0;i < tried[depth];++i) exclude(b[i],false);
+                    --depth;
+                }
+            }
+        }
+        /**
+         * Lists the centres to branch on, which damage the undamaged pixel with the fewest
+         * centres left.
+         * @return The amount of centres, which is <code>0</code> if none are left for the pixel.
+         */
+        private int branch(final int[] buf) {
+            // Ties go to the first pixel in raster order, which keeps the plan growing from one edge.
+            if(tree[1] >>> PIXEL_BITS == 0) return 0;
+            final int pick = tree[1] & (1 << PIXEL_BITS) - 1;
+            int k = 0;
+            {
+                final int n = cover(pixels[pick],buf);
+                for(int j = 0;j < n;++j) if(!excluded[buf[j]]) buf[k++] = buf[j];
+            }
+            // Mark the undamaged pixels of each centre in the window around the pixel which
+            // holds every footprint that damages it. A centre is dominated by another one if
+            // the other one damages all of its undamaged pixels, and a plan which uses a
+            // dominated centre is never better than one which uses the other centre instead.
+            final long[][] masks = new long[k][WINDOW_WORDS];
+            final int[] gain = new int[k];
+            {
+                final int pr = pixels[pick] / IMG_WIDTH,pc = pixels[pick] % IMG_WIDTH;
+                for(int j = 0;j < k;++j) {
+                    final int c = centres[buf[j]],cr = c / IMG_WIDTH - pr + RADIUS,cc = c % IMG_WIDTH - pc + RADIUS;
+                    for(int dr = 0;dr < STEP;++dr)
+                        for(int dc = 0;dc < STEP;++dc)
+                            if(hits[pid[c + (dr - RADIUS) * IMG_WIDTH + dc - RADIUS]] == 0) {
+                                final int bit = (cr + dr) * WINDOW + cc + dc;
+                                masks[j][bit >>> 6] |= 1L << bit;
+                                ++gain[j];
+                            }
+                }
+            }
+            int kept = 0;
+            for(int j = 0;j < k;++j) {
+                boolean dominated = false;
+                for(int i = 0;i < k && !dominated;++i) {
+                    if(i == j) continue;
+                    boolean subset = true,equal = true;
+                    for(int w = 0;w < WINDOW_WORDS;++w) {
+                        subset &= (masks[j][w] & ~masks[i][w]) == 0L;
+                        equal &= masks[j][w] == masks[i][w];
+                    }
+                    // Of two centres with the same pixels, only the first is kept.
+                    dominated = subset && (!equal || i < j);
+                }
+                if(!dominated) {buf[kept] = buf[j]; gain[kept++] = gain[j];}
+            }
+            k = kept;
+            // Try the centres which damage the most new pixels first.
+            for(int j = 1;j < k;++j)
+                for(int i = j;i > 0 && gain[i] > gain[i - 1];--i) {
+                    final int g = gain[i]; gain[i] = gain[i - 1]; gain[i - 1] = g;
+                    final int c = buf[i]; buf[i] = buf[i - 1]; buf[i - 1] = c;
+                }
+            return k;
+        }
+    }
+    
+    /**
+     * @param ctx Context which scored the plan.
+     * @param centres Valid shot centres, as packed by {@linkplain PlanContext}.
+     * @param in Heuristic plan to start from. It is only used by the groups where it never
+     *           misses and damages every pixel.
+     * @param budget Nanoseconds to search for.
+     * @param pool Pool which solves the groups.
+     * @param file Where the plan would be drawn.
+     * 
+     * @return The search's plan and bound, or <code>null</code> if the budget ran out before
+     *         the search started.
+     */
+    static ExactCover solve(final PlanContext ctx,final long[][] centres,final DrawResult in,final long budget,
+                            final ForkJoinPool pool,final String file) {
+        final long deadline = System.nanoTime() + budget;
+        final int size = IMG_WIDTH * IMG_WIDTH;
+        
+        // Group the centres, then number the pixels of each group.
+        final int[] cid = new int[size],pid = new int[size],gid = new int[size];
+        Arrays.fill(cid,-1);
+        Arrays.fill(pid,-1);
+        Arrays.fill(gid,-1);
+        final List<Group> groups = new ArrayList<>();
+        {
+            final int[] queue = new int[size],pix = new int[size];
+            for(int r = 0;r < IMG_WIDTH;++r)
+                for(int w = 0;w < centres[r].length;++w)
+                    for(long bits = centres[r][w];bits != 0L;bits &= bits - 1L) {
+                        final int s = r * IMG_WIDTH + (w << 6 | Long.numberOfTrailingZeros(bits));
+                        if(gid[s] >= 0) continue;
+                        final int g = groups.size();
+                        int n = 0,m = 0;
+                        gid[s] = g;
+                        queue[n++] = s;
+                        for(int i = 0;i < n;++i) {
+                            final int c = queue[i],cr = c / IMG_WIDTH,cc = c % IMG_WIDTH;
+                            cid[c] = i;
+                            for(final int d : FOOTPRINT) if(pid[c + d] < 0) {pid[c + d] = m; pix[m++] = c + d;}
+                            for(int nr = Math.max(0,cr - STEP + 1);nr <= Math.min(IMG_WIDTH - 1,cr + STEP - 1);++nr)
+                                for(int nc = Math.max(0,cc - STEP + 1);nc <= Math.min(IMG_WIDTH - 1,cc + STEP - 1);++nc) {
+                                    final int o = nr * IMG_WIDTH + nc;
+                                    if(gid[o] < 0 && (centres[nr][nc >>> 6] & 1L << nc) != 0L) {gid[o] = g; queue[n++] = o;}
+                                }
+                        }
+                        groups.add(new Group(Arrays.copyOf(queue,n),Arrays.copyOf(pix,m),cid,pid));
+                    }
+        }
+        
+        // The greedy plan covers the whole map, so it is only worth it with time left.
+        if(System.nanoTime() >= deadline) return null;
+        
+        // Seed every group with the smaller of the greedy plan and the heuristic plan, as
+        // long as the heuristic plan damages all of the group's pixels.
+        {
+            final List<List<Integer>> greedy = split(groups,gid,cid,GreedyCover.plan(centres,ctx.scratch())),
+                                      heuristic = split(groups,gid,cid,in.shots);
+            for(int g = 0;g < groups.size();++g) {
+                final Group group = groups.get(g);
+                group.best = toArray(greedy.get(g));
+                final int[] h = toArray(heuristic.get(g));
+                if(h.length < group.best.length && covers(group,h)) group.best = h;
+            }
+        }
+        
+        // The smallest groups are solved first, since they are the most likely to be proven.
+        // Each group gets its share of the time left among the groups not started yet, and
+        // whatever it does not use goes to the groups after it.
+        final List<Group> bySize = new ArrayList<>(groups);
+        bySize.sort((a,b) -> Integer.compare(a.pixels.length,b.pixels.length));
+        final CompletableFuture<?>[] tasks = new CompletableFuture<?>[groups.size()];
+        final AtomicInteger left = new AtomicInteger(groups.size());
+        final int threads = pool.getParallelism();
+        for(int g = 0;g < tasks.length;++g) {
+            final Group group = bySize.get(g);
+            tasks[g] = CompletableFuture.runAsync(() -> {
+                final long now = System.nanoTime(),share = Math.max(0L,deadline - now) * threads / Math.max(threads,left.getAndDecrement());
+                group.solve(now + share);
+            },pool);
+        }
+        CompletableFuture.allOf(tasks).join();
+        
+        final ShotBuffer shots = new ShotBuffer();
+        int lower = 0,proven = 0;
+        for(final Group group : groups) {
+            for(final int c : group.best) shots.add((short)(group.centres[c] / IMG_WIDTH),(short)(group.centres[c] % IMG_WIDTH));
+            lower += group.lower;
+            if(group.proven) ++proven;
+        }
+        final Coverage cov = ctx.scratch();
+        for(int s = 0;s < shots.size();++s) cov.add(shots.row(s),shots.col(s));
+        return new ExactCover(ctx.result(cov,shots,file),lower,groups.size(),proven);
+    }
+    /**@return The group-local centres of the shots in each group. Shots which are not on a valid centre are dropped.*/
+    private static List<List<Integer>> split(final List<Group> groups,final int[] gid,final int[] cid,final ShotBuffer shots) {
+        final List<List<Integer>> out = new ArrayList<>(groups.size());
+        for(int g = 0;g < groups.size();++g) out.add(new ArrayList<>());
+        final boolean[] seen = new boolean[IMG_WIDTH * IMG_WIDTH];
+        for(int s = 0;s < shots.size();++s) {
+            final int i = shots.row(s) * IMG_WIDTH + shots.col(s);
+            if(gid[i] >= 0 && !seen[i]) {seen[i] = true; out.get(gid[i]).add(cid[i]);}
+        }
+        return out;
+    }
+    private static int[] toArray(final List<Integer> list) {
+        final int[] out = new int[list.size()];
+        for(int i = 0;i < out.length;++i) out[i] = list.get(i);
+        return out;
+    }
+    /**@return <code>true</code> if the centres damage every pixel of the group.*/
+    private static boolean covers(final Group group,final int[] plan) {
+        final boolean[] hit = new boolean[group.pixels.length];
+        int n = 0;
+        for(final int c : plan)
+            for(final int d : FOOTPRINT) {
+                final int p = group.pid[group.centres[c] + d];
+                if(!hit[p]) {hit[p] = true; ++n;}
+            }
+        return n == hit.length;
+    }
+}
@@ -0,0 +1,73 @@
+package kman.cannon;
+
+/**
+ * Searches for a firing order which changes between firing and not firing as few times
+ * as possible. Every change starts a new item stack in one of the modules, so fewer
+ * changes means fewer boxes and inventories.
+ */
+final class FiringOrder {
+    private FiringOrder() {}
+    
+    /**@return The amount of modules which change between the two masks.*/
+    private static final int d(final int a,final int b) {return Integer.bitCount(a ^ b);}
+    
+    /**@return The total amount of changes between consecutive masks.*/
+    static final int cost(final int[] masks) {
+        int n = 0;
+        for(int i = 1;i < masks.length;++i) n += d(masks[i - 1],masks[i]);
+        return n;
+    }
+    
+    /**
+     * Improves the order with 2-opt moves until no move helps or the time runs out. Shots
+     * with the same mask never need to be separated, so each run of equal masks is moved
+     * as one group.
+     * 
+     * @param masks Firing masks in their initial order. Equal masks should already be next
+     *              to each other.
+     * @param budget Maximum amount of nanoseconds to search for.
+     * 
+     * @return The new order, as indices into <code>masks</code>.
+     */
+    static final int[] optimize(final int[] masks,final long budget) {
+        final long deadline = System.nanoTime() + budget;
+        
+        // Collapse the runs of equal masks.
+        final int[] start = new int[masks.length + 1];
+        int m = 0;
+        for(int i = 0;i < masks.length;++i) if(i == 0 || masks[i] != masks[i - 1]) start[m++] = i;
+        start[m] = masks.length;
+        final int[] g = new int[m];
+        for(int i = 0;i < m;++i) g[i] = i;
+        
+        // Reversing the groups i..j only changes the edges on either side of them.
+        boolean improved = true;
+        search:
+        while(improved) {
+            improved = false;
+            for(int i = 0;i < m - 1;++i) {
+                if(System.nanoTime() > deadline) break search;
+                final int p = i == 0? -1 : masks[start[g[i - 1]]],
+                          a = masks[start[g[i]]];
+                for(int j = i + 1;j < m;++j) {
+                    final int b = masks[start[g[j]]],
+                              q = j == m - 1? -1 : masks[start[g[j + 1]]];
+                    int delta = 0;
+                    if(i > 0) delta += d(p,b) - d(p,a);
+                    if(j < m - 1) delta += d(a,q) - d(b,q);
+                    if(delta < 0) {
+                        for(int x = i,y = j;x < y;++x,--y) {final int t = g[x]; g[x] = g[y]; g[y] = t;}
+                        improved = true;
+                        break;
+                    }
+                }
+            }
+        }
+        
+        // Expand the groups back into shots.
+        final int[] out = new int[masks.length];
+        for(int i = 0,k = 0;i < m;++i)
+            for(int s = start[g[i]];s < start[g[i] + 1];++s) out[k++] = s;
+        return out;
+    }
+}
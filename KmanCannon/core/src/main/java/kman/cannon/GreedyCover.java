@@ -0,0 +1,68 @@
+package kman.cannon;
+
+import static kman.cannon.Canary.IMG_WIDTH;
+import static kman.cannon.Canary.STEP;
+
+import java.util.Arrays;
+
+/**
+ * Places shots anywhere instead of along lines, by treating the plan as a set cover.
+ * Every valid centre is a candidate, and the candidate which newly damages the most
+ * pixels is always placed next, until no candidate damages anything new.
+ * <p>
+ * A candidate's gain only ever shrinks as shots are placed, so gains are evaluated
+ * lazily: the candidates are kept in one bucket per gain, and a candidate's gain is only
+ * recomputed when it reaches the front of the highest bucket. If it has shrunk, the
+ * candidate is moved to the back of its new bucket, otherwise it is placed. Ties are
+ * placed in row-major order.
+ */
+final class GreedyCover {
+    private GreedyCover() {}
+    
+    /**Most pixels a single shot can damage.*/
+    private static final int MAX_GAIN = STEP * STEP;
+    /**End of a bucket.*/
+    private static final int NONE = -1;
+    
+    /**
+     * @param centres Valid shot centres, as packed by {@linkplain PlanContext}.
+     * @param cov Coverage to place the shots in. It should be empty.
+     * 
+     * @return The placed shots, in the order they were placed.
+     */
+    static ShotBuffer plan(final long[][] centres,final Coverage cov) {
+        // Each bucket is a queue, linked through the candidates by their pixel index.
+        final int[] head = new int[MAX_GAIN + 1],tail = new int[MAX_GAIN + 1],
+                    next = new int[IMG_WIDTH * IMG_WIDTH];
+        Arrays.fill(head,NONE);
+        Arrays.fill(tail,NONE);
+        for(int r = 0;r < IMG_WIDTH;++r) {
+            final long[] row = centres[r];
+            for(int w = 0;w < row.length;++w)
+                for(long bits = row[w];bits != 0L;bits &= bits - 1L)
+                    push(head,tail,next,MAX_GAIN,r * IMG_WIDTH + (w << 6 | Long.numberOfTrailingZeros(bits)));
+        }
+        
+        final ShotBuffer out = new ShotBuffer();
+        for(int g = MAX_GAIN;g > 0;) {
+            final int i = head[g];
+            if(i == NONE) {--g; continue;}
+            head[g] = next[i];
+            if(head[g] == NONE) tail[g] = NONE;
+            final short r = (short)(i / IMG_WIDTH),c = (short)(i % IMG_WIDTH);
+            final int gain = cov.gain(r,c);
+            if(gain == g) {
+                cov.add(r,c);
+                out.add(r,c);
+            } else if(gain > 0) push(head,tail,next,gain,i);
+        }
+        return out;
+    }
+    /**Appends the candidate to the back of the bucket.*/
+    private static final void push(final int[] head,final int[] tail,final int[] next,final int g,final int i) {
+        next[i] = NONE;
+        if(tail[g] == NONE) head[g] = i;
+        else next[tail[g]] = i;
+        tail[g] = i;
+    }
+}
@@ -1,3 +1,5 @@
+package kman.cannon;
+
 import static java.lang.Math.hypot;
 import static java.lang.System.out;
 
@@ -134,7 +136,7 @@ public class ImageProcessor {
 		g.drawRect(c,r,0,0);
 	}
 	
-	private static class DrawResult {
+	static class DrawResult {
 		public final boolean[][] damaged;
 		public final int ndamage,nmiss,nshots;
 		public final double acc,eff,err;
@@ -245,7 +247,8 @@ public class ImageProcessor {
 		return a.nmiss > b.nmiss? b:a;
 	}
 	
-	public static void execute(final String file) throws IOException {
+	/**@return The best result by accuracy.*/
+	public static DrawResult execute(final String file) throws IOException {
 		final BufferedImage original = createMap(file+".png");
 		final LinkedList<Shot> total = new LinkedList<>();
 		
@@ -289,6 +292,7 @@ public class ImageProcessor {
 		printResult("best eff",dr_eff,toDamage);
 		
 		draw(total,original,file+"total.png",toDamage);
+		return dr_acc;
 	}
 	
 	public static void main(String[] args) {
@@ -0,0 +1,57 @@
+package kman.cannon;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes binary NBT straight to a stream. Tags are written as they are called, so lists
+ * must know their length up front. Tags inside a list are written without a name by
+ * passing <code>null</code>.
+ */
+final class NbtWriter implements Closeable {
+    static final byte END = 0,
+                      BYTE = 1,
+                      INT = 3,
+                      STRING = 8,
+                      LIST = 9,
+                      COMPOUND = 10;
+    
+    private final DataOutputStream out;
+    
+    /**@param out Stream to write to. It is closed along with this writer.*/
+    NbtWriter(final OutputStream out) {this.out = new DataOutputStream(out);}
+    
+    /**Writes the type and name of a tag, unless it is an element of a list.*/
+    private NbtWriter tag(final byte type,final String name) throws IOException {
+        if(name != null) {
+            out.writeByte(type);
+            out.writeUTF(name);
+        }
+        return this;
+    }
+    
+    NbtWriter putByte(final String name,final int v) throws IOException {tag(BYTE,name).out.writeByte(v); return this;}
+    NbtWriter putInt(final String name,final int v) throws IOException {tag(INT,name).out.writeInt(v); return this;}
+    NbtWriter putString(final String name,final String v) throws IOException {tag(STRING,name).out.writeUTF(v); return this;}
+    /**Starts a compound. Every tag until the matching {@linkplain #end()} is inside it.*/
+    NbtWriter compound(final String name) throws IOException {return tag(COMPOUND,name);}
+    /**Ends the innermost compound.*/
+    NbtWriter end() throws IOException {out.writeByte(END); return this;}
+    /**
+     * Starts a list. The next <code>length</code> tags, which must be of the specified type
+     * and have no name, are its elements.
+     */
+    NbtWriter list(final String name,final byte type,final int length) throws IOException {
+        tag(LIST,name);
+        out.writeByte(length == 0? END : type);
+        out.writeInt(length);
+        return this;
+    }
+    
+    /**Writes tags which were already encoded by another writer.*/
+    NbtWriter raw(final byte[] tags) throws IOException {out.write(tags); return this;}
+    
+    @Override public void close() throws IOException {out.close();}
+}
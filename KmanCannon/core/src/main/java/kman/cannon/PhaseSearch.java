@@ -0,0 +1,119 @@
+package kman.cannon;
+
+import static kman.cannon.Canary.RADIUS;
+import static kman.cannon.Canary.STEP;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+import kman.cannon.Canary.Comparator;
+import kman.cannon.Canary.DrawResult;
+
+/**
+ * Searches every combination of the offset between lines, the phase of the lattice along
+ * each line and the direction of the sweep: east and west along rows, south and north
+ * along columns. Every sweep is generated from the context's shared index of valid
+ * centres and only scored, never drawn.
+ * <p>
+ * The phases of a sweep damage the same pixels with as many shots, so the sweeps alone
+ * only tell them apart by propulsion. Once the best sweep is known, every phase of its
+ * direction and offset is anti-aliased, and another phase only replaces the best sweep's
+ * if its anti-aliasing passes score strictly better.
+ */
+final class PhaseSearch {
+    /**Amount of sweep directions.*/
+    static final int DIRECTIONS = 4;
+    /**Amount of sweeps scored per image.*/
+    static final int SWEEPS = DIRECTIONS * STEP * STEP;
+    /**Amount of coverage slots used by a search, one per phase and anti-aliasing pass.*/
+    static final int SLOTS = STEP * (RADIUS + 2);
+    private static final String[] NAMES = new String[] {"east","west","south","north"};
+    
+    /**Best sweep followed by its anti-aliasing passes, indexed by factor plus one.*/
+    final DrawResult[] results;
+    /**Offset, phase and direction of the best sweep.*/
+    final String name;
+    
+    private PhaseSearch(final DrawResult[] results,final String name)
+    {this.results = results; this.name = name;}
+    
+    /**@return The name of the sweep.*/
+    private static final String name(final short offset,final byte phase,final byte direction)
+    {return "phase"+offset+'-'+phase+'-'+NAMES[direction];}
+    
+    /**
+     * @param ctx Context with a loaded image.
+     * @param comparator Function to compare {@linkplain DrawResult}s.
+     * @param pool Pool which evaluates the sweeps.
+     * @param nf Path prefix of the drawn images.
+     * @param slot First of the {@value #SLOTS} slots which hold the coverage of the results.
+     * 
+     * @return The best sweep and its anti-aliasing passes, scored in the context's slots.
+     */
+    static PhaseSearch search(final PlanContext ctx,final Comparator comparator,final ForkJoinPool pool,final String nf,
+                              final int slot) {
+        // Every sweep is kept, since the anti-aliasing passes need the sweeps with the
+        // other offsets.
+        final ShotBuffer[][][] sweeps = new ShotBuffer[DIRECTIONS][STEP][STEP];
+        final DrawResult[][] best = new DrawResult[DIRECTIONS][STEP];
+        final short[][] offsets = new short[DIRECTIONS][STEP];
+        {
+            final CompletableFuture<?>[] tasks = new CompletableFuture<?>[DIRECTIONS * STEP];
+            for(byte direction = 0;direction < DIRECTIONS;++direction)
+                for(byte phase = 0;phase < STEP;++phase) {
+                    final byte d = direction,p = phase;
+                    tasks[d * STEP + p] = CompletableFuture.runAsync(() -> {
+                        // One coverage is shared by the task's sweeps. Each sweep's shots are
+                        // removed again once it has been scored.
+                        final Coverage cov = ctx.scratch();
+                        DrawResult b = null;
+                        for(short o = 0;o < STEP;++o) {
+                            final ShotBuffer shots = sweeps[d][p][o] = ctx.getLines(d >= 2,(d & 1) != 0,o,p,new ShotBuffer());
+                            for(int s = 0;s < shots.size();++s) cov.add(shots.row(s),shots.col(s));
+                            final DrawResult dr = ctx.result(cov,shots,nf+name(o,p,d)+".png");
+                            if((b = comparator.compare(dr,b)) == dr) offsets[d][p] = o;
+                            for(int s = 0;s < shots.size();++s) cov.remove(shots.row(s),shots.col(s));
+                        }
+                        best[d][p] = b;
+                    },pool);
+                }
+            CompletableFuture.allOf(tasks).join();
+        }
+        // Reduce in a fixed order so that the result does not depend on timing.
+        byte bd = 0,bp = 0;
+        {
+            DrawResult out = null;
+            for(byte d = 0;d < DIRECTIONS;++d)
+                for(byte p = 0;p < STEP;++p) {
+                    final DrawResult b = comparator.compare(best[d][p],out);
+                    if(b != out) {out = b; bd = d; bp = p;}
+                }
+        }
+        
+        // Anti-alias every phase of the best sweep's direction and offset.
+        final byte dir = bd;
+        final short offset = offsets[bd][bp];
+        final DrawResult[][] results = new DrawResult[STEP][RADIUS + 2];
+        final DrawResult[] aa = new DrawResult[STEP];
+        {
+            final CompletableFuture<?>[] tasks = new CompletableFuture<?>[STEP];
+            for(byte phase = 0;phase < STEP;++phase) {
+                final byte p = phase;
+                tasks[p] = CompletableFuture.runAsync(() -> {
+                    final DrawResult[] r = results[p];
+                    final int sP = slot + p * (RADIUS + 2);
+                    final String name = name(offset,p,dir);
+                    r[0] = ctx.score(sweeps[dir][p][offset],nf+name+".png",sP);
+                    DrawResult b = null;
+                    for(short f = 0;f <= RADIUS;++f)
+                        b = comparator.compare(r[f + 1] = ctx.antiAlias(r[0],f,sweeps[dir][p],nf+"AA_"+name+'-'+f+".png",sP + f + 1),b);
+                    aa[p] = b;
+                },pool);
+            }
+            CompletableFuture.allOf(tasks).join();
+        }
+        byte phase = bp;
+        for(byte p = 0;p < STEP;++p) if(comparator.compare(aa[phase],aa[p]) != aa[phase]) phase = p;
+        return new PhaseSearch(results[phase],name(offset,phase,dir));
+    }
+}
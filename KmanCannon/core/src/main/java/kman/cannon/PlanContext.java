@@ -0,0 +1,468 @@
+package kman.cannon;
+
+import static kman.cannon.Canary.BACKGROUND;
+import static kman.cannon.Canary.COVERAGE;
+import static kman.cannon.Canary.FOREGROUND;
+import static kman.cannon.Canary.IMG_WIDTH;
+import static kman.cannon.Canary.MISS;
+import static kman.cannon.Canary.RADIUS;
+import static kman.cannon.Canary.SHOT;
+import static kman.cannon.Canary.STEP;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.imageio.ImageIO;
+
+import kman.cannon.Canary.DrawResult;
+
+/**
+ * Holds everything needed to plan the shots for a single image: the foreground map,
+ * the source image and the coverage of each candidate. A context can be
+ * reused for any number of images, but it can only plan one image at a time. Use
+ * one context per image being planned concurrently.
+ */
+public final class PlanContext {
+    /**Amount of <code>long</code>s needed to hold one bit per column.*/
+    static final int WORDS = (IMG_WIDTH + Long.SIZE - 1) / Long.SIZE;
+    
+    /**Foreground map, packed as one bit per column.*/
+    private final long[][] map = new long[IMG_WIDTH][WORDS];
+    /**Valid shot centres, packed the same way as the map. Built once per image.*/
+    private final long[][] centres = new long[IMG_WIDTH][WORDS];
+    /**
+     * Runs of valid shot centres in each row, stored as pairs of the first and last
+     * column of the run, and the amount of <code>short</code>s used in each row.
+     */
+    private final short[][] runs = new short[IMG_WIDTH][IMG_WIDTH - 2 * RADIUS];
+    private final short[] nruns = new short[IMG_WIDTH];
+    /**Runs of valid shot centres in each column, stored the same way as the rows.*/
+    private final short[][] colRuns = new short[IMG_WIDTH][IMG_WIDTH - 2 * RADIUS];
+    private final short[] ncolRuns = new short[IMG_WIDTH];
+    /**
+     * Coverage of the results, indexed by candidate slot. Each one is allocated the first
+     * time its slot is used.
+     */
+    private final Coverage[] coverage = new Coverage[ShotPlanner.SLOTS];
+    private BufferedImage image = null;
+    private int toDamage = 0;
+    
+    /**@return The image which is currently loaded.*/
+    public BufferedImage image() {return image;}
+    /**@return The amount of foreground pixels in the current image.*/
+    public int toDamage() {return toDamage;}
+    
+    /**
+     * Loads a new image into the context.
+     * 
+     * @param original Image to plan. Any non-white pixel is treated as foreground.
+     * 
+     * @return The black and white map of the image.
+     */
+    public BufferedImage load(final BufferedImage original) {
+        if(original.getWidth() != IMG_WIDTH && original.getHeight() != IMG_WIDTH)
+            throw new IllegalArgumentException("Image size:"+IMG_WIDTH+'x'+IMG_WIDTH+" != "+original.getWidth()+'x'+
+                                               original.getHeight());
+        
+        final BufferedImage out = copyImage(original);
+        
+        int total = 0;
+        for(short row = 0;row < IMG_WIDTH;++row) {
+            final long[] r = map[row];
+            Arrays.fill(r,0L);
+            for(short col = 0;col < IMG_WIDTH;++col)
+                if(out.getRGB(col,row) != BACKGROUND) {
+                    r[col >>> 6] |= 1L << col;
+                    out.setRGB(col,row,FOREGROUND);
+                }
+            for(final long w : r) total += Long.bitCount(w);
+        }
+        
+        index();
+        image = original;
+        toDamage = total;
+        return out;
+    }
+    /**Creates the map from an image file.*/
+    public BufferedImage createMap(final String file) throws IOException {
+        final BufferedImage original = ImageIO.read(new File(file));
+        ImageIO.write(load(original),"png",new File(file.substring(0,file.lastIndexOf('.'))+"map.png"));
+        return original;
+    }
+    
+    /**
+     * Rebuilds the index of valid shot centres and their runs. A centre is valid when the
+     * entire footprint of a shot placed there is foreground.
+     */
+    private final void index() {
+        final long[] band = new long[WORDS];
+        for(int r = 0;r < IMG_WIDTH;++r) {
+            final long[] valid = centres[r];
+            if(r < RADIUS || r >= IMG_WIDTH - RADIUS) {Arrays.fill(valid,0L); nruns[r] = 0; continue;}
+            // Find the columns where all the rows of the footprint are foreground. Each
+            // word tests 64 columns at once.
+            System.arraycopy(map[r - RADIUS],0,band,0,WORDS);
+            for(int nr = r - RADIUS + 1;nr <= r + RADIUS;++nr) {
+                final long[] row = map[nr];
+                for(int w = 0;w < WORDS;++w) band[w] &= row[w];
+            }
+            // Then find the columns where all the columns of the footprint are in the band.
+            for(int w = 0;w < WORDS;++w) {
+                final int c = w << 6;
+                long v = -1L;
+                for(int dc = -RADIUS;dc <= RADIUS;++dc) v &= window(band,c + dc);
+                valid[w] = v;
+            }
+            // Finally, record where each run of valid centres starts and ends.
+            final short[] run = runs[r];
+            short n = 0;
+            for(int c = nextSetBit(valid,0),e;c >= 0;c = nextSetBit(valid,e + 1)) {
+                e = nextClearBit(valid,c) - 1;
+                run[n++] = (short)c;
+                run[n++] = (short)e;
+            }
+            nruns[r] = n;
+        }
+        // The columns are indexed the same way, one row at a time, so that vertical
+        // sweeps share the same centres.
+        final short[] open = new short[IMG_WIDTH];
+        Arrays.fill(ncolRuns,(short)0);
+        Arrays.fill(open,(short)-1);
+        for(short r = 0;r <= IMG_WIDTH;++r)
+            for(short c = 0;c < IMG_WIDTH;++c) {
+                final boolean valid = r < IMG_WIDTH && (centres[r][c >>> 6] & 1L << c) != 0L;
+                if(valid && open[c] < 0) open[c] = r;
+                else if(!valid && open[c] >= 0) {
+                    colRuns[c][ncolRuns[c]++] = open[c];
+                    colRuns[c][ncolRuns[c]++] = (short)(r - 1);
+                    open[c] = -1;
+                }
+            }
+    }
+    
+    /**
+     * @param set Bits indexed by column.
+     * @param c Column.
+     * 
+     * @return The 64 bits of the set starting at the column. Any columns outside of the
+     *         image are clear.
+     */
+    private static final long window(final long[] set,final int c) {
+        if(c < 0) return c <= -Long.SIZE? 0L : window(set,0) << -c;
+        final int w = c >>> 6,
+                  b = c & 63;
+        if(w >= WORDS) return 0L;
+        final long lo = set[w] >>> b;
+        return b == 0 || w + 1 == WORDS? lo : lo | set[w + 1] << (Long.SIZE - b);
+    }
+    /**
+     * @param set Bits indexed by column.
+     * @param c Column.
+     * 
+     * @return The first set column at or after <code>c</code>, or <code>-1</code> if
+     *         there is none.
+     */
+    private static final int nextSetBit(final long[] set,final int c) {
+        if(c >= IMG_WIDTH) return -1;
+        int w = c >>> 6;
+        long bits = set[w] & -1L << c;
+        while(bits == 0L) if(++w == WORDS) return -1; else bits = set[w];
+        return (w << 6) | Long.numberOfTrailingZeros(bits);
+    }
+    /**
+     * @param set Bits indexed by column.
+     * @param c Column.
+     * 
+     * @return The first clear column at or after <code>c</code>.
+     */
+    private static final int nextClearBit(final long[] set,final int c) {
+        int w = c >>> 6;
+        if(w >= WORDS) return c;
+        long bits = ~set[w] & -1L << c;
+        while(bits == 0L) if(++w == WORDS) return w << 6; else bits = ~set[w];
+        return (w << 6) | Long.numberOfTrailingZeros(bits);
+    }
+    
+    /**
+     * Appends an entire line of shots. Each line is listed from its last shot to its first.
+     * 
+     * @param r Row.
+     * @param out Shots to append to.
+     */
+    private final void getLineEast(final short r,final ShotBuffer out) {
+        final short[] run = runs[r];
+        final int first = out.size();
+        // The footprint of the first shot in each segment must start after the end of the
+        // previous segment.
+        int from = RADIUS;
+        for(int i = 0;i < nruns[r];i += 2) {
+            final short end = run[i + 1];
+            short c = (short)Math.max(run[i],from);
+            if(c > end) continue;
+            // Space the shots a footprint apart, finishing on the end of the run.
+            for(;c < end;c += STEP) out.add(r,c);
+            out.add(r,end);
+            from = end + RADIUS + 1;
+        }
+        out.reverse(first,out.size());
+    }
+    /**
+     * Appends an entire line of shots. Each line is listed from its last shot to its first.
+     * 
+     * @param r Row.
+     * @param out Shots to append to.
+     */
+    private final void getLineWest(final short r,final ShotBuffer out) {
+        final short[] run = runs[r];
+        final int first = out.size();
+        // The footprint of the first shot in each segment must end before the start of the
+        // previous segment.
+        int from = IMG_WIDTH - 1 - RADIUS;
+        for(int i = nruns[r] - 2;i >= 0;i -= 2) {
+            final short start = run[i];
+            short c = (short)Math.min(run[i + 1],from);
+            if(c < start) continue;
+            // The left-most column is never part of the first fit.
+            if(c <= RADIUS) break;
+            // Space the shots a footprint apart, finishing on the start of the run.
+            for(;c > start;c -= STEP) out.add(r,c);
+            out.add(r,start);
+            from = start - RADIUS - 1;
+        }
+        out.reverse(first,out.size());
+    }
+    
+    /**
+     * @param offset Row offset.
+     * @param out Shots to append to.
+     * 
+     * @return All shots.
+     */
+    final ShotBuffer getLinesEast(final short offset,final ShotBuffer out) {
+        for(short r = (short)(offset + RADIUS);r < IMG_WIDTH;r += STEP) getLineEast(r,out);
+        return out;
+    }
+    /**
+     * @param offset Row offset.
+     * @param out Shots to append to.
+     * 
+     * @return All shots.
+     */
+    final ShotBuffer getLinesWest(final short offset,final ShotBuffer out) {
+        for(short r = (short)(offset + RADIUS);r < IMG_WIDTH;r += STEP) getLineWest(r,out);
+        return out;
+    }
+    
+    /**
+     * Appends an entire line of shots, where every shot between the ends of a segment sits
+     * on a lattice of columns, or rows for a vertical line, when the segment has enough
+     * slack. Otherwise the shots are spaced a footprint apart from the start of the
+     * segment. Every phase uses as many shots as {@linkplain #getLinesEast(short,ShotBuffer)}
+     * and damages the same pixels, but lines up the shots of neighbouring lines
+     * differently. Each line is listed from its last shot to its first.
+     * 
+     * @param line Row of a horizontal line, or column of a vertical one.
+     * @param vertical <code>true</code> if the line is a column.
+     * @param reverse <code>true</code> to sweep west or north instead of east or south.
+     * @param phase Position of the lattice, modulo {@linkplain Canary#STEP}.
+     * @param out Shots to append to.
+     */
+    private final void getLine(final short line,final boolean vertical,final boolean reverse,final byte phase,
+                               final ShotBuffer out) {
+        final short[] run = vertical? colRuns[line] : runs[line];
+        final int n = vertical? ncolRuns[line] : nruns[line],
+                  dir = reverse? -1 : 1,
+                  first = out.size();
+        // The footprint of the first shot in each segment must not overlap the previous
+        // segment.
+        int from = reverse? IMG_WIDTH - 1 - RADIUS : RADIUS;
+        for(int j = 0;j < n;j += 2) {
+            final int i = reverse? n - 2 - j : j,
+                      a = reverse? Math.min(run[i + 1],from) : Math.max(run[i],from),
+                      b = reverse? run[i] : run[i + 1],
+                      length = (b - a) * dir;
+            if(length < 0) continue;
+            // Shot k can move back by up to the slack without leaving a gap before the next one.
+            final int shots = (length + STEP - 1) / STEP + 1,
+                      slack = (shots - 1) * STEP - length,
+                      d = Math.floorMod((a - phase) * dir,STEP),
+                      shift = length > 0 && d <= slack? d : 0;
+            add(line,vertical,a,out);
+            for(int k = 1;k < shots - 1;++k) add(line,vertical,a + (k * STEP - shift) * dir,out);
+            if(length > 0) add(line,vertical,b,out);
+            from = b + (RADIUS + 1) * dir;
+        }
+        out.reverse(first,out.size());
+    }
+    /**Appends the shot at the position along the line.*/
+    private static final void add(final short line,final boolean vertical,final int at,final ShotBuffer out) {
+        if(vertical) out.add((short)at,line);
+        else out.add(line,(short)at);
+    }
+    /**
+     * @param vertical <code>true</code> to sweep along columns.
+     * @param reverse <code>true</code> to sweep west or north instead of east or south.
+     * @param offset Row offset, or column offset of a vertical sweep.
+     * @param phase Position of the lattice along each line, modulo {@linkplain Canary#STEP}.
+     * @param out Shots to append to.
+     * 
+     * @return All shots.
+     * 
+     * @see #getLine(short,boolean,boolean,byte,ShotBuffer)
+     */
+    final ShotBuffer getLines(final boolean vertical,final boolean reverse,final short offset,final byte phase,
+                              final ShotBuffer out) {
+        for(short l = (short)(offset + RADIUS);l < IMG_WIDTH;l += STEP) getLine(l,vertical,reverse,phase,out);
+        return out;
+    }
+    
+    private static final BufferedImage copyImage(final BufferedImage in) {
+        final BufferedImage out = new BufferedImage(in.getWidth(),in.getHeight(),BufferedImage.TYPE_INT_RGB);
+        out.getGraphics().drawImage(in,0,0,null);
+        return out;
+    }
+    
+    /**@return The cleared coverage of the candidate in the specified slot.*/
+    private Coverage coverage(final int slot) {
+        Coverage out = coverage[slot];
+        if(out == null) coverage[slot] = out = new Coverage(map);
+        else out.clear();
+        return out;
+    }
+    
+    /**@return A new coverage of the map, which is not owned by any slot.*/
+    final Coverage scratch() {return new Coverage(map);}
+    
+    final DrawResult result(final Coverage cov,final ShotBuffer shots,final String file) {
+        final int ndamage = cov.ndamage(),
+                  nmiss = cov.nmiss(),
+                  nshots = shots.size();
+        return new DrawResult(
+            cov,
+            ndamage,
+            nmiss,
+            nshots,
+            ((double)(ndamage - nmiss) / (double)toDamage) * 100.0,
+            ((double)ndamage / (double)(nshots * STEP * STEP)) * 100.0,
+            shots,
+            file
+        );
+    }
+    /**
+     * Scores the shots without drawing them.
+     * 
+     * @param shots Shots to score.
+     * @param file Where the shots would be drawn.
+     * @param slot Candidate slot which owns the coverage of the result.
+     */
+    final DrawResult score(final ShotBuffer shots,final String file,final int slot) {
+        final Coverage cov = coverage(slot);
+        for(int s = 0;s < shots.size();++s) cov.add(shots.row(s),shots.col(s));
+        return result(cov,shots,file);
+    }
+    /**
+     * Scores the shots placed greedily at any valid centre.
+     * 
+     * @param file Where the shots would be drawn.
+     * @param slot Candidate slot which owns the coverage of the result.
+     * 
+     * @see GreedyCover
+     */
+    final DrawResult greedy(final String file,final int slot) {
+        final Coverage cov = coverage(slot);
+        return result(cov,GreedyCover.plan(centres,cov),file);
+    }
+    /**
+     * Searches for the fewest shots which damage every pixel that a valid centre can
+     * damage, without missing.
+     * 
+     * @param in Heuristic plan to start from.
+     * @param budget Nanoseconds to search for.
+     * @param pool Pool which runs the search.
+     * @param file Where the shots would be drawn.
+     * 
+     * @return The search's plan and bound, or <code>null</code> if the budget ran out before
+     *         the search started.
+     * 
+     * @see ExactCover
+     */
+    final ExactCover exact(final DrawResult in,final long budget,final ForkJoinPool pool,final String file)
+    {return ExactCover.solve(this,centres,in,budget,pool,file);}
+    /**
+     * Scores the best combination of a line from each band, where each band picks its own
+     * row offset and direction.
+     * 
+     * @param east Shots of every east sweep, indexed by row offset.
+     * @param west Shots of every west sweep, indexed by row offset.
+     * @param pool Pool which evaluates the bands.
+     * @param file Where the shots would be drawn.
+     * @param slot Candidate slot which owns the coverage of the result.
+     * 
+     * @see Bands
+     */
+    final DrawResult bands(final ShotBuffer[] east,final ShotBuffer[] west,final ForkJoinPool pool,final String file,
+                           final int slot)
+    {return score(Bands.plan(map,east,west,pool),file,slot);}
+    /**
+     * Fills in the gaps between the shots of a result with shots from the sweeps whose row
+     * offset is within <code>factor</code> of the centre of a footprint. The closest sweeps
+     * are tried last. A shot is only kept if it damages a pixel which was not already
+     * damaged, and the result is scored as each one is added.
+     * 
+     * @param in Result to fill in. It must have been scored by this context.
+     * @param factor Scalar to offset the shots.
+     * @param lines Shots of every sweep in one direction, indexed by row offset.
+     * @param file Where the shots would be drawn.
+     * @param slot Candidate slot which owns the coverage of the result.
+     */
+    final DrawResult antiAlias(final DrawResult in,final short factor,final ShotBuffer[] lines,final String file,
+                               final int slot) {
+        Coverage cov = coverage[slot];
+        if(cov == null) coverage[slot] = cov = new Coverage(map);
+        cov.copy(in.coverage);
+        final ShotBuffer out = new ShotBuffer(in.shots);
+        for(short f = factor;f >= 0;--f) {
+            fill(out,lines[RADIUS + f],cov);
+            if(f > 0) fill(out,lines[RADIUS - f],cov);
+        }
+        return result(cov,out,file);
+    }
+    /**Transfers all the shots which get unique blocks.*/
+    private static final void fill(final ShotBuffer out,final ShotBuffer shots,final Coverage cov) {
+        for(int s = 0;s < shots.size();++s) {
+            final short r = shots.row(s),c = shots.col(s);
+            if(cov.gain(r,c) != 0) {
+                cov.add(r,c);
+                out.add(r,c);
+            }
+        }
+    }
+    /**
+     * Draws a result onto a copy of the loaded image and writes it to the result's file.
+     * The result must have been scored by this context for the current image.
+     */
+    public void draw(final DrawResult dr) throws IOException {ImageIO.write(render(dr.shots,dr.coverage),"png",new File(dr.file));}
+    
+    private static final void damage(final BufferedImage g,final int r,final int c) {g.setRGB(c,r,COVERAGE[(r + c) % 2]);}
+    
+    /**
+     * @param shots Shots to draw.
+     * @param cov Coverage of the shots.
+     * 
+     * @return A copy of the loaded image with the damage, shots and misses drawn on it.
+     */
+    private BufferedImage render(final ShotBuffer shots,final Coverage cov) {
+        final BufferedImage o = copyImage(image);
+        for(int r = 0;r < IMG_WIDTH;++r)
+            for(int c = 0;c < IMG_WIDTH;++c)
+                if(cov.damaged(r,c)) damage(o,r,c);
+        for(int s = 0;s < shots.size();++s) o.setRGB(shots.col(s),shots.row(s),SHOT);
+        for(int r = 0;r < IMG_WIDTH;++r)
+            for(int c = 0;c < IMG_WIDTH;++c)
+                if(cov.damaged(r,c) && (map[r][c >>> 6] & 1L << c) == 0L) o.setRGB(c,r,MISS);
+        return o;
+    }
+}
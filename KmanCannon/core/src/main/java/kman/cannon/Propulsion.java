@@ -0,0 +1,84 @@
+package kman.cannon;
+
+import static java.lang.Math.abs;
+import static kman.cannon.Canary.IMG_WIDTH;
+
+/**
+ * The amount of propulsion tnt needed to hit a shot. Each axis only depends on the
+ * distance of the shot from the corner which fires it and on the parity of that
+ * corner, which gives 8 orientations: 4 corners, each with 2 parities.
+ */
+final class Propulsion {
+    private static final double a = .49f,
+                                b = .51f,
+                                v  = .25 - 1.111853393488571e-3;
+    public static final byte ORIENTATIONS = 8;
+    
+    // Orientation:                                        se    sw    ne    nw    se    sw    ne    nw
+    /**<code>true</code> if the axis distance is measured from the first edge instead of the far edge.*/
+    private static final boolean[] X_NEAR = new boolean[] {false,true ,false,true ,false,true ,false,true },
+                                   Z_NEAR = new boolean[] {false,false,true ,true ,false,false,true ,true };
+    /**Index of the parity used by the axis: 0 for <code>a</code>, 1 for <code>b</code>.*/
+    private static final byte[]    X_PARITY = new byte[] {1    ,0    ,0    ,1    ,0    ,1    ,1    ,0    },
+                                   Z_PARITY = new byte[] {0    ,1    ,1    ,0    ,1    ,0    ,0    ,1    };
+    
+    /**
+     * Propulsion for every distance from an edge, indexed by parity and then distance.
+     * This is all a shot's propulsion depends on, so it is only computed once.
+     */
+    private static final short[][] TABLE = new short[2][IMG_WIDTH + 1];
+    static {
+        for(short d = 0;d <= IMG_WIDTH;++d) {
+            TABLE[0][d] = propulsion(d,a);
+            TABLE[1][d] = propulsion(d,b);
+        }
+    }
+    
+    private Propulsion() {}
+    
+    /**
+     * @param r Distance to target.
+     * @param r0 Initial distance.
+     * @return Amount of required propulsion TNT. 
+     */
+    private static final short propulsion(final short r,final double r0) {
+        final double dv = r + .5 - r0;
+        final short nTnT = (short)(dv / v);
+        return (short)(nTnT + (abs(dv % 1 - .5) < abs((dv + v + r0) % 1 - .5)? 0 : 1));
+    }
+    
+    /**
+     * @param pidx Orientation.
+     * @param r Row of the shot.
+     * @return Amount of tnt needed along the first axis.
+     */
+    public static final short x(final byte pidx,final short r)
+    {return TABLE[X_PARITY[pidx]][X_NEAR[pidx]? r : IMG_WIDTH - r];}
+    /**
+     * @param pidx Orientation.
+     * @param c Column of the shot.
+     * @return Amount of tnt needed along the second axis.
+     */
+    public static final short z(final byte pidx,final short c)
+    {return TABLE[Z_PARITY[pidx]][Z_NEAR[pidx]? c : IMG_WIDTH - c];}
+    
+    /**
+     * @param shots Shots to fire.
+     * @return The total propulsion of all the shots for each orientation.
+     */
+    public static final long[] totals(final ShotBuffer shots) {
+        // Each axis only depends on one coordinate, so count the shots in every row and
+        // column and weigh each count by its propulsion.
+        final int[] rows = new int[IMG_WIDTH],
+                    cols = new int[IMG_WIDTH];
+        for(int s = 0;s < shots.size();++s) {++rows[shots.row(s)]; ++cols[shots.col(s)];}
+        
+        final long[] out = new long[ORIENTATIONS];
+        for(byte p = 0;p < ORIENTATIONS;++p) {
+            long total = 0L;
+            for(short i = 0;i < IMG_WIDTH;++i) total += (long)rows[i] * x(p,i) + (long)cols[i] * z(p,i);
+            out[p] = total;
+        }
+        return out;
+    }
+}
@@ -0,0 +1,74 @@
+package kman.cannon;
+
+import java.util.Arrays;
+
+/**
+ * A list of shots, stored as parallel arrays of rows and columns. Appending a shot is
+ * amortized constant time and does not allocate anything per shot.
+ */
+public final class ShotBuffer {
+    private short[] rows,cols;
+    private int size = 0;
+    
+    public ShotBuffer() {this(256);}
+    /**@param capacity Initial amount of shots which fit without growing.*/
+    public ShotBuffer(final int capacity) {rows = new short[capacity]; cols = new short[capacity];}
+    /**@param s Shots to copy.*/
+    public ShotBuffer(final ShotBuffer s) {
+        rows = Arrays.copyOf(s.rows,s.rows.length);
+        cols = Arrays.copyOf(s.cols,s.cols.length);
+        size = s.size;
+    }
+    
+    /**@return The amount of shots.*/
+    public int size() {return size;}
+    /**@return The row of the i-th shot.*/
+    public short row(final int i) {return rows[i];}
+    /**@return The column of the i-th shot.*/
+    public short col(final int i) {return cols[i];}
+    
+    /**Makes room for at least <code>n</code> shots.*/
+    private void ensure(final int n) {
+        if(n <= rows.length) return;
+        final int capacity = Math.max(n,rows.length * 2);
+        rows = Arrays.copyOf(rows,capacity);
+        cols = Arrays.copyOf(cols,capacity);
+    }
+    
+    /**Appends a shot.*/
+    public void add(final short r,final short c) {
+        ensure(size + 1);
+        rows[size] = r;
+        cols[size++] = c;
+    }
+    /**Appends every shot in the other buffer.*/
+    public void addAll(final ShotBuffer s) {
+        ensure(size + s.size);
+        System.arraycopy(s.rows,0,rows,size,s.size);
+        System.arraycopy(s.cols,0,cols,size,s.size);
+        size += s.size;
+    }
+    /**Removes every shot.*/
+    public void clear() {size = 0;}
+    
+    /**Reverses the order of the shots in <code>[from,to)</code>.*/
+    void reverse(int from,int to) {
+        for(--to;from < to;++from,--to) {
+            final short r = rows[from],c = cols[from];
+            rows[from] = rows[to]; cols[from] = cols[to];
+            rows[to] = r;          cols[to] = c;
+        }
+    }
+    /**
+     * Reorders the shots.
+     * 
+     * @param order Index of the shot which goes in each position.
+     */
+    void permute(final int[] order) {
+        final short[] r = new short[rows.length],
+                      c = new short[cols.length];
+        for(int i = 0;i < size;++i) {r[i] = rows[order[i]]; c[i] = cols[order[i]];}
+        rows = r;
+        cols = c;
+    }
+}
@@ -0,0 +1,185 @@
+package kman.cannon;
+
+import static kman.cannon.Canary.RADIUS;
+import static kman.cannon.Canary.STEP;
+import static kman.cannon.Canary.printResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+
+import kman.cannon.Canary.Comparator;
+import kman.cannon.Canary.DrawResult;
+
+/**
+ * Searches the main-sequence lines, the best per-band combination of them, the best sweep
+ * of every offset, phase and direction, and their anti-aliasing passes for the best shot
+ * placement, along with shots placed greedily at any valid centre. A planner holds no
+ * per-image state, so one instance can be shared by any number of threads as long as each
+ * of them plans with its own {@linkplain PlanContext}.
+ */
+public final class ShotPlanner implements AutoCloseable {
+    /**Amount of candidates evaluated per image.*/
+    public static final int CANDIDATES = STEP * 2 * (RADIUS + 2) // Main sequence
+                                       + 1 + 2 * (RADIUS + 1)   // Per band
+                                       + 1 + RADIUS + 1         // Best phase
+                                       + 1;                     // Greedy
+    /**
+     * Amount of coverage slots used per image. The best phase's candidates are scored in
+     * the slots of the {@linkplain PhaseSearch}, which follow the candidates' own.
+     */
+    static final int SLOTS = CANDIDATES + PhaseSearch.SLOTS;
+    
+    private final Comparator comparator;
+    private final ForkJoinPool pool;
+    private final boolean shared;
+    private final PrintStream log;
+    private final boolean debug;
+    
+    /**
+     * @param comparator Function to compare {@linkplain DrawResult}s.
+     * @param log Stream which receives the statistics of every candidate, or <code>null</code>.
+     * @param debug <code>true</code> to draw every candidate instead of only the best.
+     */
+    public ShotPlanner(final Comparator comparator,final PrintStream log,final boolean debug)
+    {this(comparator,new ForkJoinPool(Runtime.getRuntime().availableProcessors()),false,log,debug);}
+    /**
+     * @param comparator Function to compare {@linkplain DrawResult}s.
+     * @param pool Pool which evaluates the candidates. It is not shut down by {@linkplain #close()}.
+     * @param log Stream which receives the statistics of every candidate, or <code>null</code>.
+     * @param debug <code>true</code> to draw every candidate instead of only the best.
+     */
+    public ShotPlanner(final Comparator comparator,final ForkJoinPool pool,final PrintStream log,final boolean debug)
+    {this(comparator,pool,true,log,debug);}
+    private ShotPlanner(final Comparator comparator,final ForkJoinPool pool,final boolean shared,final PrintStream log,
+                        final boolean debug) {
+        this.comparator = comparator;
+        this.pool = pool;
+        this.shared = shared;
+        this.log = log;
+        this.debug = debug;
+    }
+    
+    /**Draws the result if debugging.*/
+    private final DrawResult debug(final PlanContext ctx,final DrawResult dr) {
+        if(debug) {
+            try {ctx.draw(dr);}
+            catch(final IOException e) {throw new UncheckedIOException(e);}
+        }
+        return dr;
+    }
+    /**@return The name of the file, without the parent directories.*/
+    private static final String title(final String file) {
+        final String[] split = file.split(Pattern.quote(File.separator));
+        return split[split.length-1];
+    }
+    
+    /**
+     * Finds the best shot placement for the image loaded in the context and draws it.
+     * Candidates are only scored, so no other images are written unless debugging. The
+     * result shares the context's scratch buffers, so it is only valid until the context
+     * plans another image.
+     * 
+     * @param ctx Context with a loaded image.
+     * @param nf Path prefix of the drawn images.
+     * 
+     * @return The best candidate according to the comparator.
+     */
+    public DrawResult plan(final PlanContext ctx,final String nf) throws IOException {
+        DrawResult best = null;
+        
+        // Each sweep is generated once and shared by its main-sequence candidate and by
+        // every anti-aliasing pass which uses its offset.
+        final ShotBuffer[] east = new ShotBuffer[STEP],
+                           west = new ShotBuffer[STEP];
+        {
+            final CompletableFuture<?>[] sweeps = new CompletableFuture<?>[STEP * 2];
+            for(short offset = 0;offset < STEP;offset++) {
+                final short o = offset;
+                sweeps[2 * o]     = CompletableFuture.runAsync(() -> east[o] = ctx.getLinesEast(o,new ShotBuffer()),pool);
+                sweeps[2 * o + 1] = CompletableFuture.runAsync(() -> west[o] = ctx.getLinesWest(o,new ShotBuffer()),pool);
+            }
+            CompletableFuture.allOf(sweeps).join();
+        }
+        
+        // Every candidate only reads the map and the sweeps, and the anti-aliasing passes
+        // only depend on their main-sequence line, so all of them are evaluated at the same
+        // time. The futures are kept in the order in which they are compared so that the
+        // reduction does not depend on which candidate finishes first.
+        final List<CompletableFuture<DrawResult>> candidates = new ArrayList<>(CANDIDATES);
+        // The greedy plan is compared first, then the best phase, then the per-band plan,
+        // so each of them only wins when it is strictly better than every plan after it. The phase
+        // is filled in from the sweeps with its own direction and phase, and the per-band
+        // plan from both directions.
+        {
+            final int sG = candidates.size();
+            candidates.add(CompletableFuture.supplyAsync(() -> debug(ctx,ctx.greedy(nf+"greedy.png",sG)),pool));
+        }
+        {
+            final CompletableFuture<PhaseSearch>
+                phases = CompletableFuture.supplyAsync(() -> PhaseSearch.search(ctx,comparator,pool,nf,CANDIDATES),pool);
+            for(int result = 0;result < RADIUS + 2;result++) {
+                final int r = result;
+                candidates.add(phases.thenApplyAsync(p -> debug(ctx,p.results[r]),pool));
+            }
+        }
+        {
+            final int sB = candidates.size();
+            final CompletableFuture<DrawResult>
+                drB = CompletableFuture.supplyAsync(() -> debug(ctx,ctx.bands(east,west,pool,nf+"bands.png",sB)),pool);
+            candidates.add(drB);
+            for(short factor = 0;factor <= RADIUS;factor++) {
+                final short aa = factor;
+                final String f = nf+"AA_bands-"+factor;
+                final int aW = candidates.size(),
+                          aE = aW + 1;
+                candidates.add(drB.thenApplyAsync(dr -> debug(ctx,ctx.antiAlias(dr,aa,west,f+"-west.png",aW)),pool));
+                candidates.add(drB.thenApplyAsync(dr -> debug(ctx,ctx.antiAlias(dr,aa,east,f+"-east.png",aE)),pool));
+            }
+        }
+        // Run through the main-sequence lines.
+        for(short offset = 0;offset < STEP;offset++) {
+            final short o = offset;
+            final int sE = candidates.size(),
+                      sW = sE + 1;
+            final CompletableFuture<DrawResult>
+                drE = CompletableFuture.supplyAsync(() -> debug(ctx,ctx.score(east[o],nf+o+"-east.png",sE)),pool),
+                drW = CompletableFuture.supplyAsync(() -> debug(ctx,ctx.score(west[o],nf+o+"-west.png",sW)),pool);
+            candidates.add(drE);
+            candidates.add(drW);
+            
+            // Copy each coverage and fill in the gaps with every anti-aliasing factor
+            // to find the most optimal result.
+            for(short factor = 0;factor <= RADIUS;factor++) {
+                final short aa = factor;
+                final String f = nf+"AA_"+offset+'-'+factor;
+                final int aW = candidates.size(),
+                          aE = aW + 1;
+                candidates.add(drW.thenApplyAsync(dr -> debug(ctx,ctx.antiAlias(dr,aa,west,f+"-west.png",aW)),pool));
+                candidates.add(drE.thenApplyAsync(dr -> debug(ctx,ctx.antiAlias(dr,aa,east,f+"-east.png",aE)),pool));
+            }
+        }
+        
+        for(final CompletableFuture<DrawResult> c : candidates) {
+            final DrawResult dr;
+            try {dr = c.join();}
+            catch(final CompletionException e) {
+                if(e.getCause() instanceof UncheckedIOException) throw ((UncheckedIOException)e.getCause()).getCause();
+                throw e;
+            }
+            if(log != null) printResult(log,title(dr.file),dr);
+            best = comparator.compare(dr,best);
+        }
+        if(!debug) ctx.draw(best);
+        return best;
+    }
+    
+    @Override public void close() {if(!shared) pool.shutdown();}
+}
@@ -0,0 +1,66 @@
+package kman.cannon;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+
+import javax.imageio.ImageIO;
+
+import kman.cannon.Canary.DrawResult;
+import kman.cannon.Workloads.Kind;
+
+/**
+ * Plans every synthetic workload and records how long the whole pipeline took and how
+ * good the result was. Comparing the results between releases shows whether a change
+ * made planning faster or slower, and whether it changed the plans.
+ * <p>
+ * Usage: <code>WorkloadRunner [directory] [seed]</code>. The maps, everything generated
+ * for them and <code>results.tsv</code> are written to the directory. The searches with a
+ * time budget are off unless their system properties are set, and every row records the
+ * budgets it was planned with.
+ */
+public final class WorkloadRunner {
+    private WorkloadRunner() {}
+    
+    /**Densities of the noise workloads.*/
+    private static final double[] DENSITIES = new double[] {.25,.5,.75,.9};
+    /**System properties of the searches which run for a fixed time.*/
+    private static final String[] BUDGETS = new String[] {"kman.cannon.order","kman.cannon.refine","kman.cannon.exact"};
+    
+    public static void main(final String[] args) throws IOException {
+        // Canary reads the budgets when it is loaded, so they must be pinned before that.
+        for(final String budget : BUDGETS) if(System.getProperty(budget) == null) System.setProperty(budget,"0");
+        final File dir = new File(args.length > 0? args[0] : "workloads");
+        final long seed = args.length > 1? Long.parseLong(args[1]) : 0L;
+        Files.createDirectories(dir.toPath());
+        // The statistics of every candidate are not needed here.
+        final PrintStream quiet = new PrintStream(new OutputStream() {
+            @Override public void write(final int b) {}
+            @Override public void write(final byte[] b,final int off,final int len) {}
+        });
+        
+        try(final PrintWriter tsv = new PrintWriter(new File(dir,"results.tsv"),"UTF-8")) {
+            final String header = "map\tms\tshots\tdamage\tmisses\tacc\teff\tbudgets";
+            tsv.println(header);
+            System.out.println(header);
+            for(final Kind kind : Kind.values())
+                for(final double density : kind == Kind.NOISE? DENSITIES : new double[] {.5}) {
+                    final String name = kind.name().toLowerCase()+(kind == Kind.NOISE? "-"+(int)(density * 100) : "");
+                    final File file = new File(dir,name+".png");
+                    ImageIO.write(Workloads.generate(kind,density,seed),"png",file);
+                    
+                    final long start = System.nanoTime();
+                    final DrawResult dr = Canary.execute(file.getPath(),Canary.BEST,false,quiet);
+                    final double ms = (System.nanoTime() - start) / 1e6;
+                    
+                    final String row = String.format("%s\t%.1f\t%d\t%d\t%d\t%.3f\t%.3f\t%s",name,ms,dr.nshots,dr.ndamage,dr.nmiss,dr.acc,dr.eff,
+                                                     Canary.budgets());
+                    tsv.println(row);
+                    System.out.println(row);
+                }
+        }
+    }
+}
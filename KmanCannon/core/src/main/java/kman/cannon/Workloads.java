@@ -0,0 +1,126 @@
+package kman.cannon;
+
+import static kman.cannon.Canary.IMG_WIDTH;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Generates synthetic maps to plan, in the format {@linkplain PlanContext#createMap(String)}
+ * reads. The same kind, density and seed always give the same map.
+ */
+public final class Workloads {
+    private Workloads() {}
+    
+    public static enum Kind {
+        /**Solid rectangles of many sizes.*/
+        SOLID,
+        /**Lines of text in a few sizes.*/
+        TEXT,
+        /**Lines which are thinner than a shot.*/
+        LINES,
+        /**Ordered dithering of smooth noise.*/
+        NOISE,
+        /**Concentric rings of varying widths.*/
+        RINGS,
+        /**A sheet of small, mirrored pixel-art sprites.*/
+        SPRITES
+    }
+    
+    /**4x4 Bayer matrix, used as the thresholds of the dithering.*/
+    private static final byte[] BAYER = new byte[] { 0, 8, 2,10,
+                                                    12, 4,14, 6,
+                                                     3,11, 1, 9,
+                                                    15, 7,13, 5};
+    private static final String[] WORDS = new String[] {"TNT","CANNON","BOOM","PIXEL","ART","KMAN","BLAST","CRATER","MAP","SHOT"};
+    
+    /**
+     * @param kind Kind of map.
+     * @param density Roughly how much of the map is foreground, from 0 to 1. Only used by
+     *                {@linkplain Kind#NOISE}.
+     * @param seed Seed of the random layout.
+     * 
+     * @return A black and white map.
+     */
+    public static BufferedImage generate(final Kind kind,final double density,final long seed) {
+        final BufferedImage out = new BufferedImage(IMG_WIDTH,IMG_WIDTH,BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g = out.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0,0,IMG_WIDTH,IMG_WIDTH);
+        g.setColor(Color.BLACK);
+        final Random rng = new Random(seed);
+        switch(kind) {
+            case SOLID:
+                for(int i = 0;i < 40;++i) {
+                    final int w = 8 + rng.nextInt(120),h = 8 + rng.nextInt(120);
+                    g.fillRect(rng.nextInt(IMG_WIDTH - w),rng.nextInt(IMG_WIDTH - h),w,h);
+                }
+                break;
+            case TEXT:
+                // Anti-aliasing would add grey pixels, which count as foreground.
+                g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+                for(int y = 0;y < IMG_WIDTH;) {
+                    final int size = 16 + rng.nextInt(48);
+                    g.setFont(new Font(Font.SANS_SERIF,rng.nextBoolean()? Font.BOLD : Font.PLAIN,size));
+                    y += size;
+                    final StringBuilder line = new StringBuilder();
+                    while(line.length() < 40) line.append(WORDS[rng.nextInt(WORDS.length)]).append(' ');
+                    g.drawString(line.toString(),rng.nextInt(16),y);
+                }
+                break;
+            case LINES:
+                for(int i = 0;i < 120;++i) {
+                    final int x = rng.nextInt(IMG_WIDTH),y = rng.nextInt(IMG_WIDTH);
+                    g.fillRect(x,y,rng.nextBoolean()? 1 + rng.nextInt(4) : rng.nextInt(IMG_WIDTH - x),
+                                   rng.nextBoolean()? 1 + rng.nextInt(4) : rng.nextInt(IMG_WIDTH - y));
+                }
+                break;
+            case NOISE: {
+                // Smooth the noise by interpolating a coarse grid of random values.
+                final int cell = 24,n = IMG_WIDTH / cell + 2;
+                final double[][] grid = new double[n][n];
+                for(final double[] r : grid) for(int i = 0;i < n;++i) r[i] = rng.nextDouble();
+                for(int y = 0;y < IMG_WIDTH;++y)
+                    for(int x = 0;x < IMG_WIDTH;++x) {
+                        final int gx = x / cell,gy = y / cell;
+                        final double fx = (double)(x % cell) / cell,fy = (double)(y % cell) / cell,
+                                     v = (grid[gy][gx] * (1 - fx) + grid[gy][gx + 1] * fx) * (1 - fy) +
+                                         (grid[gy + 1][gx] * (1 - fx) + grid[gy + 1][gx + 1] * fx) * fy;
+                        // The noise averages one half, so this is roughly the density on average.
+                        if(BAYER[(y & 3) << 2 | (x & 3)] + .5 < 32 * density * v) out.setRGB(x,y,Color.BLACK.getRGB());
+                    }
+                break;
+            }
+            case RINGS: {
+                final int cx = IMG_WIDTH / 2 + rng.nextInt(64) - 32,cy = IMG_WIDTH / 2 + rng.nextInt(64) - 32;
+                boolean fill = true;
+                for(int r = IMG_WIDTH;r > 0;r -= 2 + rng.nextInt(24),fill ^= true) {
+                    g.setColor(fill? Color.BLACK : Color.WHITE);
+                    g.fillOval(cx - r,cy - r,2 * r,2 * r);
+                }
+                break;
+            }
+            case SPRITES: {
+                // Each sprite is an 8x8 bitmap which is mirrored left to right, then scaled up.
+                final int scale = 4,size = 8 * scale,pitch = size + 12;
+                for(int sy = 6;sy + size <= IMG_WIDTH;sy += pitch)
+                    for(int sx = 6;sx + size <= IMG_WIDTH;sx += pitch)
+                        for(int y = 0;y < 8;++y) {
+                            final int bits = rng.nextInt(16);
+                            for(int x = 0;x < 4;++x)
+                                if((bits >>> x & 1) != 0) {
+                                    g.fillRect(sx + x * scale,sy + y * scale,scale,scale);
+                                    g.fillRect(sx + (7 - x) * scale,sy + y * scale,scale,scale);
+                                }
+                        }
+                break;
+            }
+        }
+        g.dispose();
+        return out;
+    }
+}
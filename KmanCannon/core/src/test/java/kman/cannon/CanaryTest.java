@@ -0,0 +1,97 @@
+package kman.cannon;
+
+import static kman.cannon.Canary.RADIUS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.Test;
+
+import kman.cannon.Canary.DrawResult;
+import kman.cannon.Workloads.Kind;
+
+/**
+ * Checks the shot ranking against the original planner's module decomposition and
+ * against a plain comparison sort of the same keys.
+ */
+public class CanaryTest {
+    private static final short[] MODULES = new short[] {1056,528,264,132,66,30,16,8,4,4,2,1};
+    
+    /**The original planner's decomposition of a shot's propulsion into firing modules.*/
+    private static final boolean[] decompose(final short[] in) {
+        final boolean[] out = new boolean[MODULES.length * 2];
+        final short[] cpy = in.clone();
+        int i = 0,j = 0;
+        for(;i < MODULES.length && cpy[0] > 0;++i)     if(out[i] = MODULES[i] <= cpy[0]) cpy[0] -= MODULES[i];
+        for(;j < MODULES.length && cpy[1] > 0;++i,++j) if(out[i] = MODULES[j] <= cpy[1]) cpy[1] -= MODULES[j];
+        return out;
+    }
+    /**@return The firing mask of every shot, decomposed by the original planner.*/
+    private static final int[] masks(final DrawResult dr) {
+        final int[] out = new int[dr.nshots];
+        for(int s = 0;s < dr.nshots;++s) {
+            final boolean[] fires = decompose(new short[] {Propulsion.x(dr.pidx,dr.shots.row(s)),
+                                                           Propulsion.z(dr.pidx,dr.shots.col(s))});
+            for(int i = 0;i < fires.length;++i) if(fires[i]) out[s] |= 1 << i;
+        }
+        return out;
+    }
+    /**
+     * @return The order of the shots, sorted by the position of their inverted firing
+     *         pattern in the reflected Gray code, with the most used module as the most
+     *         significant bit. Shots with the same pattern keep their order.
+     */
+    private static final List<Integer> reference(final int[] masks) {
+        final int modules = MODULES.length * 2;
+        final int[] counts = new int[modules];
+        for(final int m : masks) for(int i = 0;i < modules;++i) if((m >>> i & 1) != 0) ++counts[i];
+        final List<Integer> order = new ArrayList<>();
+        for(int i = 0;i < modules;++i) order.add(i);
+        // The most used module first, and modules used equally often keep their order.
+        Collections.sort(order,(a,b) -> Integer.compare(counts[b],counts[a]));
+        
+        final long[] rank = new long[masks.length];
+        for(int s = 0;s < masks.length;++s) {
+            // Gray code to binary: each bit is the parity of the bits above it.
+            boolean parity = false;
+            for(final int i : order) {
+                parity ^= (masks[s] >>> i & 1) == 0;
+                rank[s] = rank[s] << 1 | (parity? 1 : 0);
+            }
+        }
+        final List<Integer> out = new ArrayList<>();
+        for(int s = 0;s < masks.length;++s) out.add(s);
+        Collections.sort(out,Comparator.comparingLong(s -> rank[s]));
+        return out;
+    }
+    
+    @Test
+    public void rankSortsTheOriginalMasks() {
+        for(final Kind kind : Kind.values()) {
+            final PlanContext ctx = new PlanContext();
+            ctx.load(Workloads.generate(kind,.5,0L));
+            // Two sweeps with different offsets and directions, so that the shots are not
+            // already in order.
+            final ShotBuffer shots = ctx.getLinesEast((short)0,new ShotBuffer());
+            shots.addAll(ctx.getLinesWest((short)RADIUS,new ShotBuffer()));
+            final DrawResult dr = ctx.score(shots,"",0);
+            final int[] masks = masks(dr),
+                        ranked = new int[dr.nshots],
+                        order = Canary.rank(dr,ranked);
+            final List<Integer> expected = reference(masks);
+            
+            assertEquals(kind+": shots",expected.size(),order.length);
+            final boolean[] seen = new boolean[order.length];
+            for(int s = 0;s < order.length;++s) {
+                assertFalse(kind+": shot "+order[s]+" is ranked twice",seen[order[s]]);
+                seen[order[s]] = true;
+                assertEquals(kind+": shot at "+s,(int)expected.get(s),order[s]);
+                assertEquals(kind+": mask at "+s,masks[order[s]],ranked[s]);
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package kman.cannon;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+/**
+ * Checks that streaming a command with {@linkplain CommandWriter} gives the same text as
+ * the original planner, which built every quoted layer as its own string and escaped it
+ * before adding it to the layer around it.
+ */
+public class CommandWriterTest {
+    /**Characters of the random commands, including the ones which need escaping.*/
+    private static final String CHARS = "ab{}:,~ \"\\";
+    
+    /**The original planner's way to put a layer inside a quoted string.*/
+    private static final String quote(final String layer) {return '"'+layer.replace("\\","\\\\").replace("\"","\\\"")+'"';}
+    
+    /**
+     * Writes a random command to both the stream and a layered string.
+     * 
+     * @return The command, with every layer escaped by the layer around it.
+     */
+    private static final String command(final Random rng,final CommandWriter w,final int depth) throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        for(int i = rng.nextInt(6);i > 0;--i) {
+            if(depth < 5 && rng.nextInt(3) == 0) {
+                w.quote();
+                sb.append(quote(command(rng,w,depth + 1)));
+                w.unquote();
+            } else {
+                final char c = CHARS.charAt(rng.nextInt(CHARS.length()));
+                w.append(c);
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+    @Test
+    public void nestedQuotesMatchTheLayeredStrings() throws IOException {
+        final Random rng = new Random(0L);
+        for(int i = 0;i < 1000;++i) {
+            final StringWriter out = new StringWriter();
+            final String expected = command(rng,new CommandWriter(out),0);
+            assertEquals("command "+i,expected,out.toString());
+        }
+    }
+    @Test(expected = IllegalStateException.class)
+    public void unquoteNeedsAnOpenString() throws IOException {new CommandWriter(new StringWriter()).quote().unquote().unquote();}
+    
+    /**@return The text of a gzipped resource next to this class.*/
+    static final String resource(final String name) throws IOException {
+        try(final InputStream in = new GZIPInputStream(CommandWriterTest.class.getResourceAsStream(name))) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buf = new byte[1 << 16];
+            for(int n;(n = in.read(buf)) > 0;) out.write(buf,0,n);
+            return new String(out.toByteArray(),StandardCharsets.UTF_8);
+        }
+    }
+    /**Compares two long texts around the first character where they differ, so that a failure stays readable.*/
+    static final void assertText(final String message,final String expected,final String actual) {
+        int i = 0;
+        while(i < expected.length() && i < actual.length() && expected.charAt(i) == actual.charAt(i)) ++i;
+        if(i == expected.length() && i == actual.length()) return;
+        final int from = Math.max(0,i - 40);
+        assertEquals(message+" at "+i,expected.substring(from,Math.min(expected.length(),i + 40)),
+                     actual.substring(from,Math.min(actual.length(),i + 40)));
+    }
+    /**
+     * <code>random.mcfunction.gz</code> was written by the original planner's
+     * <code>StringBuilder</code> modules from these masks.
+     */
+    @Test
+    public void writeCommandMatchesTheStringBuilders() throws IOException {
+        final Random rng = new Random(13L);
+        final int[] masks = new int[300];
+        for(int s = 0;s < masks.length;++s) masks[s] = rng.nextInt(1 << 24);
+        final StringWriter out = new StringWriter();
+        Canary.writeCommand(out,Canary.modules(masks));
+        assertText("random",resource("random.mcfunction.gz"),out.toString());
+    }
+}
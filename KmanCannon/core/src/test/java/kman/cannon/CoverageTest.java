@@ -0,0 +1,111 @@
+package kman.cannon;
+
+import static kman.cannon.Canary.BACKGROUND;
+import static kman.cannon.Canary.IMG_WIDTH;
+import static kman.cannon.Canary.RADIUS;
+import static kman.cannon.Canary.STEP;
+import static org.junit.Assert.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import kman.cannon.Canary.DrawResult;
+import kman.cannon.Workloads.Kind;
+
+/**
+ * Checks that the incremental damage and miss counts match the original planner, which
+ * stamped every shot into a fresh map and then counted the misses over the whole image.
+ */
+public class CoverageTest {
+    /**Counts of the shots, recounted from scratch.*/
+    private static final class Recount {
+        final boolean[][] damaged = new boolean[IMG_WIDTH][IMG_WIDTH];
+        int ndamage = 0,nmiss = 0;
+        
+        Recount(final BufferedImage image,final List<int[]> shots) {
+            for(final int[] s : shots)
+                for(int c = s[1] - RADIUS;c <= s[1] + RADIUS;++c)
+                    for(int r = s[0] - RADIUS;r <= s[0] + RADIUS;++r)
+                        if(!damaged[r][c]) {++ndamage; damaged[r][c] = true;}
+            for(int r = 0;r < IMG_WIDTH;++r)
+                for(int c = 0;c < IMG_WIDTH;++c)
+                    if(damaged[r][c] && image.getRGB(c,r) == BACKGROUND) ++nmiss;
+        }
+    }
+    
+    private static final void assertCounts(final String message,final BufferedImage image,final List<int[]> shots,
+                                           final Coverage cov) {
+        final Recount expected = new Recount(image,shots);
+        assertEquals(message+": damage",expected.ndamage,cov.ndamage());
+        assertEquals(message+": misses",expected.nmiss,cov.nmiss());
+        assertEquals(message+": shots",shots.size(),cov.nshots());
+        assertEquals(message+": overlap",shots.size() * STEP * STEP - expected.ndamage,cov.noverlap());
+        for(int r = 0;r < IMG_WIDTH;++r)
+            for(int c = 0;c < IMG_WIDTH;++c)
+                assertEquals(message+": pixel "+r+','+c,expected.damaged[r][c],cov.damaged(r,c));
+    }
+    
+    @Test
+    public void addAndRemoveMatchARecount() {
+        for(final Kind kind : new Kind[] {Kind.TEXT,Kind.NOISE,Kind.SPRITES}) {
+            final BufferedImage image = Workloads.generate(kind,.5,0L);
+            final PlanContext ctx = new PlanContext();
+            ctx.load(image);
+            final Coverage cov = ctx.scratch();
+            final Random rng = new Random(kind.ordinal());
+            final List<int[]> shots = new ArrayList<>();
+            for(int i = 0;i < 2000;++i) {
+                final int[] s = new int[] {RADIUS + rng.nextInt(IMG_WIDTH - 2 * RADIUS),RADIUS + rng.nextInt(IMG_WIDTH - 2 * RADIUS)};
+                assertEquals(kind+": gain of shot "+i,STEP * STEP - count(cov,s),cov.gain(s[0],s[1]));
+                cov.add(s[0],s[1]);
+                shots.add(s);
+            }
+            assertCounts(kind+" added",image,shots,cov);
+            
+            // Remove half of the shots, in a different order than they were added.
+            Collections.shuffle(shots,rng);
+            while(shots.size() > 1000) {
+                final int[] s = shots.remove(shots.size() - 1);
+                cov.remove(s[0],s[1]);
+            }
+            assertCounts(kind+" removed",image,shots,cov);
+            for(final int[] s : shots) cov.remove(s[0],s[1]);
+            assertCounts(kind+" empty",image,Collections.<int[]>emptyList(),cov);
+        }
+    }
+    /**@return The amount of pixels of the shot's footprint which are already damaged.*/
+    private static final int count(final Coverage cov,final int[] s) {
+        int n = 0;
+        for(int r = s[0] - RADIUS;r <= s[0] + RADIUS;++r)
+            for(int c = s[1] - RADIUS;c <= s[1] + RADIUS;++c)
+                if(cov.damaged(r,c)) ++n;
+        return n;
+    }
+    @Test
+    public void scoreMatchesARecount() {
+        for(final Kind kind : Kind.values()) {
+            final BufferedImage image = Workloads.generate(kind,.5,0L);
+            final PlanContext ctx = new PlanContext();
+            ctx.load(image);
+            final ShotBuffer shots = ctx.getLinesEast((short)0,new ShotBuffer());
+            // Shift every other shot so that some of them miss.
+            final ShotBuffer moved = new ShotBuffer();
+            final List<int[]> list = new ArrayList<>();
+            for(int s = 0;s < shots.size();++s) {
+                final short r = shots.row(s),c = (short)Math.min(IMG_WIDTH - 1 - RADIUS,shots.col(s) + s % 2 * RADIUS);
+                moved.add(r,c);
+                list.add(new int[] {r,c});
+            }
+            final DrawResult dr = ctx.score(moved,"",0);
+            final Recount expected = new Recount(image,list);
+            assertCounts(kind.toString(),image,list,dr.coverage);
+            assertEquals(kind+": accuracy",(double)(expected.ndamage - expected.nmiss) / ctx.toDamage() * 100.0,dr.acc,0.0);
+            assertEquals(kind+": efficiency",(double)expected.ndamage / (list.size() * STEP * STEP) * 100.0,dr.eff,0.0);
+        }
+    }
+}
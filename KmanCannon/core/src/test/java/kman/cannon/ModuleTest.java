@@ -0,0 +1,74 @@
+package kman.cannon;
+
+import static kman.cannon.CommandWriterTest.assertText;
+import static kman.cannon.CommandWriterTest.resource;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+
+import org.junit.Test;
+
+import kman.cannon.Canary.Module;
+
+/**
+ * Checks the run-length modules against the original planner, which linked every shot
+ * into a chain of boxes and built each sign with a <code>StringBuilder</code>. The
+ * <code>.mcfunction.gz</code> resources and the counts were written by the last tree
+ * before the modules stored runs, from the same masks.
+ */
+public class ModuleTest {
+    /**@return 300 random masks.*/
+    private static final int[] random() {
+        final Random rng = new Random(13L);
+        final int[] out = new int[300];
+        for(int s = 0;s < out.length;++s) out[s] = rng.nextInt(1 << 24);
+        return out;
+    }
+    /**@return Runs of exactly two stacks and runs which end in a partial stack.*/
+    private static final int[] runs() {
+        final int[] out = new int[6000];
+        for(int s = 0;s < out.length;++s) out[s] = s % 300 < 128? 0x00F0F0 : 0x0F0F0F;
+        return out;
+    }
+    /**@return Enough short runs to need more than one inventory per module.*/
+    private static final int[] big() {
+        final int[] out = new int[40000];
+        for(int s = 0;s < out.length;++s) out[s] = s / 7 % 2 == 0? 1 : 2;
+        return out;
+    }
+    
+    private static final String command(final int[] masks) throws IOException {
+        final StringWriter out = new StringWriter();
+        Canary.writeCommand(out,Canary.modules(masks));
+        return out.toString();
+    }
+    
+    @Test
+    public void commandsMatchTheLinkedBoxes() throws IOException {
+        assertText("runs",resource("runs.mcfunction.gz"),command(runs()));
+        assertText("big",resource("big.mcfunction.gz"),command(big()));
+    }
+    @Test
+    public void countsMatchTheLinkedBoxes() {
+        assertArrayEquals("random",new int[] {142,24},Module.count(random()));
+        assertArrayEquals("runs",new int[] {80,20},Module.count(runs()));
+        assertArrayEquals("big",new int[] {424,22},Module.count(big()));
+    }
+    @Test
+    public void modulesWhichNeverFireAreSkipped() throws IOException {
+        assertTrue(command(new int[] {0,0,0}).endsWith("BlockEntityTag:{Items:[]}}"));
+    }
+    /**A run per shot, so that every stack holds a single item.*/
+    @Test
+    public void everyShotIsItsOwnRun() throws IOException {
+        final int[] masks = new int[200000];
+        for(int s = 0;s < masks.length;s += 2) masks[s] = 1;
+        // The trailing blank shot is dropped, which leaves 199999 stacks in 7408 boxes. The
+        // 7405 boxes after the first three take 125 groups of 59 and a double chest.
+        assertArrayEquals(new int[] {7408,377},Module.count(masks));
+        assertText("alternating",resource("alternating.mcfunction.gz"),command(masks));
+    }
+}
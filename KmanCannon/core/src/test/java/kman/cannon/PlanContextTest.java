@@ -0,0 +1,203 @@
+package kman.cannon;
+
+import static kman.cannon.Canary.BACKGROUND;
+import static kman.cannon.Canary.FOREGROUND;
+import static kman.cannon.Canary.IMG_WIDTH;
+import static kman.cannon.Canary.RADIUS;
+import static kman.cannon.Canary.STEP;
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import kman.cannon.Workloads.Kind;
+
+/**
+ * Checks the bit-packed map and the line generators against the original planner, which
+ * scanned a <code>boolean</code> map one column at a time.
+ */
+public class PlanContextTest {
+    /**Foreground map of the image, as the original planner stored it.*/
+    private static final boolean[][] map(final BufferedImage image) {
+        final boolean[][] out = new boolean[IMG_WIDTH][IMG_WIDTH];
+        for(int r = 0;r < IMG_WIDTH;++r)
+            for(int c = 0;c < IMG_WIDTH;++c)
+                out[r][c] = image.getRGB(c,r) != BACKGROUND;
+        return out;
+    }
+    
+    /**@return A blank map with the pen set to the foreground.*/
+    private static final Graphics2D blank(final BufferedImage image) {
+        final Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0,0,IMG_WIDTH,IMG_WIDTH);
+        g.setColor(Color.BLACK);
+        return g;
+    }
+    /**
+     * @return A map of small blocks with wide gaps between them. Many blocks are only just
+     *         tall or wide enough for one shot, and some touch the border.
+     */
+    private static final BufferedImage sparse(final long seed) {
+        final BufferedImage out = new BufferedImage(IMG_WIDTH,IMG_WIDTH,BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g = blank(out);
+        final Random rng = new Random(seed);
+        for(int i = 0;i < 150;++i) {
+            final int w = STEP - 1 + rng.nextInt(3 * STEP),h = STEP - 1 + rng.nextInt(3 * STEP),
+                      r = rng.nextInt(8) == 0? IMG_WIDTH - h : rng.nextInt(IMG_WIDTH - h + 1),
+                      c = rng.nextInt(8) == 0? 0 : rng.nextInt(IMG_WIDTH - w + 1);
+            g.fillRect(c,r,w,h);
+        }
+        g.dispose();
+        return out;
+    }
+    /**
+     * @return A map which is all foreground apart from single pixel notches, spaced so that
+     *         the runs of valid centres between them take every length up to a few shots.
+     */
+    private static final BufferedImage notched() {
+        final BufferedImage out = new BufferedImage(IMG_WIDTH,IMG_WIDTH,BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g = blank(out);
+        g.fillRect(0,0,IMG_WIDTH,IMG_WIDTH);
+        g.dispose();
+        for(int r = 0;r < IMG_WIDTH;r += 2 * STEP + 1)
+            for(int c = r % STEP,gap = 0;c < IMG_WIDTH;c += STEP + 1 + gap++ % (3 * STEP))
+                out.setRGB(c,r,Color.WHITE.getRGB());
+        return out;
+    }
+    
+    /**
+     * The original planner's line generators. Each shot is stored as a pair of its row and
+     * column, and each line is listed from its last shot to its first.
+     */
+    private static final class Reference {
+        private final boolean[][] map;
+        
+        Reference(final boolean[][] map) {this.map = map;}
+        
+        /**@return <code>true</code> if the whole column of the footprint is foreground.*/
+        private boolean scan(final int r,final int nc) {
+            if(nc >= IMG_WIDTH || nc < 0) return false;
+            // Rows outside the image are background.
+            for(int nr = r - RADIUS;nr <= r + RADIUS;++nr)
+                if(nr < 0 || nr >= IMG_WIDTH || !map[nr][nc]) return false;
+            return true;
+        }
+        private int firstFitEast(final int r,final int c) {
+            if(r >= IMG_WIDTH - RADIUS) return -1;
+            int ctr = STEP,nc = c;
+            while(ctr > 0 && nc < IMG_WIDTH) {
+                if(scan(r,nc)) --ctr;
+                else ctr = STEP;
+                ++nc;
+            }
+            return ctr == 0? nc - RADIUS - 1 : -1;
+        }
+        private int firstFitWest(final int r,final int c) {
+            if(r < RADIUS) return -1;
+            int ctr = STEP,nc = c;
+            while(ctr > 0 && nc > 0) {
+                if(scan(r,nc)) --ctr;
+                else ctr = STEP;
+                --nc;
+            }
+            return ctr == 0? nc + RADIUS + 1 : -1;
+        }
+        private int nextEast(final int r,final int c) {
+            if(c >= IMG_WIDTH - RADIUS || !scan(r,c + 1 + RADIUS)) return -1;
+            int i = 2;
+            while(i <= STEP && scan(r,c + i + RADIUS)) ++i;
+            return i - 1;
+        }
+        private int nextWest(final int r,final int c) {
+            if(c < RADIUS || !scan(r,c - 1 - RADIUS)) return -1;
+            int i = 2;
+            while(i <= STEP && scan(r,c - i - RADIUS)) ++i;
+            return i - 1;
+        }
+        
+        private void lineEast(final int r,final List<int[]> out) {
+            final List<int[]> line = new ArrayList<>();
+            int i,j = -1;
+            while((i = firstFitEast(r,j + 1)) >= 0) {
+                j = 0;
+                do line.add(0,new int[] {r,j += i});
+                while((i = nextEast(r,j)) > 0);
+            }
+            out.addAll(line);
+        }
+        private void lineWest(final int r,final List<int[]> out) {
+            final List<int[]> line = new ArrayList<>();
+            int i,j = IMG_WIDTH;
+            while((i = firstFitWest(r,j - 1)) >= 0) {
+                j = 2 * i;
+                do line.add(0,new int[] {r,j -= i});
+                while((i = nextWest(r,j)) > 0);
+            }
+            out.addAll(line);
+        }
+        
+        List<int[]> linesEast(final int offset) {
+            final List<int[]> out = new ArrayList<>();
+            for(int r = offset + RADIUS;r < IMG_WIDTH;r += STEP) lineEast(r,out);
+            return out;
+        }
+        List<int[]> linesWest(final int offset) {
+            final List<int[]> out = new ArrayList<>();
+            for(int r = offset + RADIUS;r < IMG_WIDTH;r += STEP) lineWest(r,out);
+            return out;
+        }
+    }
+    
+    private static final void assertShots(final String message,final List<int[]> expected,final ShotBuffer actual) {
+        assertEquals(message+": shots",expected.size(),actual.size());
+        for(int s = 0;s < expected.size();++s) {
+            assertEquals(message+": row of shot "+s,expected.get(s)[0],actual.row(s));
+            assertEquals(message+": column of shot "+s,expected.get(s)[1],actual.col(s));
+        }
+    }
+    /**Checks every sweep of the image in both directions against the original planner.*/
+    private static final void assertLines(final String name,final BufferedImage image) {
+        final PlanContext ctx = new PlanContext();
+        ctx.load(image);
+        final Reference ref = new Reference(map(image));
+        for(short o = 0;o < STEP;++o) {
+            assertShots(name+" east "+o,ref.linesEast(o),ctx.getLinesEast(o,new ShotBuffer()));
+            assertShots(name+" west "+o,ref.linesWest(o),ctx.getLinesWest(o,new ShotBuffer()));
+        }
+    }
+    
+    @Test
+    public void loadPacksEveryForegroundPixel() {
+        for(final Kind kind : Kind.values()) {
+            final BufferedImage image = Workloads.generate(kind,.5,0L);
+            final boolean[][] map = map(image);
+            final PlanContext ctx = new PlanContext();
+            final BufferedImage out = ctx.load(image);
+            int total = 0;
+            for(int r = 0;r < IMG_WIDTH;++r)
+                for(int c = 0;c < IMG_WIDTH;++c) {
+                    if(map[r][c]) ++total;
+                    assertEquals(kind+" pixel "+r+','+c,map[r][c]? FOREGROUND : BACKGROUND,out.getRGB(c,r));
+                }
+            assertEquals(kind.toString(),total,ctx.toDamage());
+        }
+    }
+    @Test
+    public void linesMatchTheColumnScan() {
+        for(final Kind kind : Kind.values())
+            for(long seed = 0L;seed < 2L;++seed)
+                assertLines(kind+" "+seed,Workloads.generate(kind,.5,seed));
+    }
+    @Test
+    public void linesMatchTheColumnScanBetweenGaps() {
+        for(long seed = 0L;seed < 8L;++seed) assertLines("sparse "+seed,sparse(seed));
+        assertLines("notched",notched());
+    }
+}